@@ -0,0 +1,158 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a single commit through {@link SubtractStrings#getItem()}, across document
+ * lengths from 100 chars to 5 million chars and a range of typical edits. Run with the GC profiler
+ * ({@code -prof gc}, enabled by the {@code jmh} Gradle task) to see allocations per op.
+ *
+ * The prefix and suffix scans are also measured on their own, and should allocate nothing.
+ *
+ * @author Tom Calver
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubtractStringsBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "undo", "redo",
+            "chapter", "editor", "text", "and", "a", "of", "in", "history", "commit", "word"
+    };
+
+    private static final long SEED = 55023L;
+
+    /**
+     * The shape of the change made between old and new text.
+     */
+    public enum Edit {
+        /** A single char typed at the very start of the document. */
+        KEYSTROKE_START,
+        /** A single char typed in the middle of the document. */
+        KEYSTROKE_MIDDLE,
+        /** A single char typed at the end of the document. */
+        KEYSTROKE_END,
+        /** A quarter of the document's length pasted into its middle. */
+        LARGE_PASTE,
+        /** Half of the document deleted from its middle. */
+        LARGE_DELETION,
+        /** The entire document replaced with different text of the same length. */
+        FULL_REPLACEMENT,
+        /** A repeated word appended to a document of repeated words, i.e. "one" to "one one". */
+        REPEATED_WORD
+    }
+
+    @Param({"100", "10000", "1000000", "5000000"})
+    public int documentLength;
+
+    @Param
+    public Edit edit;
+
+    private String mOldText, mNewText;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        final Random random = new Random(SEED);
+        final String document = createText(random, documentLength);
+        final int middle = documentLength / 2;
+
+        switch (edit) {
+            case KEYSTROKE_START:
+                mOldText = document;
+                mNewText = "x" + document;
+                break;
+            case KEYSTROKE_MIDDLE:
+                mOldText = document;
+                mNewText = document.substring(0, middle) + "x" + document.substring(middle);
+                break;
+            case KEYSTROKE_END:
+                mOldText = document;
+                mNewText = document + "x";
+                break;
+            case LARGE_PASTE:
+                mOldText = document;
+                mNewText = document.substring(0, middle)
+                        + createText(random, Math.max(1, documentLength / 4))
+                        + document.substring(middle);
+                break;
+            case LARGE_DELETION:
+                mOldText = document;
+                mNewText = document.substring(0, documentLength / 4)
+                        + document.substring(documentLength / 4 + middle);
+                break;
+            case FULL_REPLACEMENT:
+                mOldText = document;
+                mNewText = createText(new Random(~SEED), documentLength);
+                break;
+            case REPEATED_WORD:
+                final String words = createRepeatedWord(documentLength - "one".length());
+                mOldText = words + "one";
+                mNewText = words + "one one";
+                break;
+            default:
+                throw new AssertionError(edit);
+        }
+
+    }
+
+    @Benchmark
+    public SubtractStrings.Item getItem() {
+        return new SubtractStrings(mOldText, mNewText).getItem();
+    }
+
+    @Benchmark
+    public int findCommonPrefixLength() {
+        return SubtractStringUtils.findCommonPrefixLength(mOldText, mNewText);
+    }
+
+    @Benchmark
+    public int findCommonSuffixLength() {
+        return SubtractStringUtils.findCommonSuffixLength(mOldText, mNewText);
+    }
+
+    private static String createText(Random random, int length) {
+
+        final StringBuilder builder = new StringBuilder(length + 16);
+
+        while (builder.length() < length) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+            builder.append((random.nextInt(12) == 0) ? '\n' : ' ');
+        }
+
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    private static String createRepeatedWord(int length) {
+
+        final StringBuilder builder = new StringBuilder(length + 4);
+
+        while (builder.length() + "one ".length() <= length) {
+            builder.append("one ");
+        }
+
+        return builder.toString();
+    }
+
+}
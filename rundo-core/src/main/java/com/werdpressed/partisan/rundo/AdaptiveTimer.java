@@ -0,0 +1,108 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the length of the countdown before text is committed, for
+ * {@link History#setAdaptiveTimerLength(long, long)}, from how quickly text is being entered and
+ * how long recent commits took to compare.
+ *
+ * The countdown is made a few times longer than the usual pause between changes, so that a typist
+ * who pauses often, rather than once a word or sentence is finished, is not committed mid-word.
+ * It is also made long enough that comparing text takes a small part of the time between commits,
+ * so that a large document, or a slow device, is compared less often. Small fields, which compare
+ * quickly, keep the shortest countdown and so the finest steps through history.
+ *
+ * @author Tom Calver
+ */
+final class AdaptiveTimer {
+
+    /**
+     * Countdown as a multiple of the usual pause between changes.
+     */
+    private static final int PAUSE_MULTIPLIER = 4;
+
+    /**
+     * Countdown as a multiple of the usual time taken to compare text, so that comparisons take
+     * at most about 2% of the time spent typing.
+     */
+    private static final int DIFF_COST_MULTIPLIER = 50;
+
+    /**
+     * Weight of each new measurement in the running averages, as a fraction of
+     * <code>1 / 2^AVERAGE_SHIFT</code>.
+     */
+    private static final int AVERAGE_SHIFT = 3;
+
+    private final long minLengthNanos, maxLengthNanos;
+
+    private long lastChangeNanos;
+    private long averagePauseNanos, averageDiffNanos;
+
+    /**
+     *
+     * @param minLengthInMillis Shortest countdown, used until changes have been measured
+     * @param maxLengthInMillis Longest countdown
+     */
+    AdaptiveTimer(long minLengthInMillis, long maxLengthInMillis) {
+
+        if (minLengthInMillis < 0 || maxLengthInMillis < minLengthInMillis) {
+            throw new IllegalArgumentException(
+                    "min " + minLengthInMillis + ", max " + maxLengthInMillis
+            );
+        }
+
+        minLengthNanos = TimeUnit.MILLISECONDS.toNanos(minLengthInMillis);
+        maxLengthNanos = TimeUnit.MILLISECONDS.toNanos(maxLengthInMillis);
+
+    }
+
+    /**
+     * Must be called with each change to the text.
+     *
+     * @param nowNanos Time of the change, from {@link System#nanoTime()}
+     */
+    void onTextChanged(long nowNanos) {
+
+        final long pause = nowNanos - lastChangeNanos;
+
+        //Longer pauses end a burst of typing, so say nothing of its rhythm
+        if (lastChangeNanos != 0 && pause >= 0 && pause < maxLengthNanos) {
+            averagePauseNanos = average(averagePauseNanos, pause);
+        }
+
+        lastChangeNanos = nowNanos;
+
+    }
+
+    /**
+     * Must be called once each commit has been compared.
+     *
+     * @param diffNanos Time spent comparing text for the commit
+     */
+    void onCommit(long diffNanos) {
+        averageDiffNanos = average(averageDiffNanos, Math.max(diffNanos, 0));
+    }
+
+    /**
+     *
+     * @return Length of the next countdown, in milliseconds.
+     */
+    long getLength() {
+
+        final long length = Math.max(
+                averagePauseNanos * PAUSE_MULTIPLIER,
+                averageDiffNanos * DIFF_COST_MULTIPLIER
+        );
+
+        return TimeUnit.NANOSECONDS.toMillis(
+                Math.min(maxLengthNanos, Math.max(minLengthNanos, length))
+        );
+
+    }
+
+    private static long average(long average, long value) {
+        return (average == 0) ? value : average + ((value - average) >> AVERAGE_SHIFT);
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes a sequence of {@link SubtractStrings.Item}s would make to text, through
+ * {@link SubtractStrings.Item#undo(TextTarget)} and {@link SubtractStrings.Item#redo(TextTarget)},
+ * and composes them into a single replacement. Stepping several entries through history then
+ * changes the tracked text once, rather than once per entry.
+ *
+ * Only the section of text between the first and last index changed is copied, and text common
+ * to the start and end of the old and new sections is left in place.
+ *
+ * @author Tom Calver
+ */
+final class ComposedEdit implements TextTarget {
+
+    private final int initialLength;
+    private int length;
+
+    /**
+     * Index of the first char changed, and number of chars after the last char changed.
+     */
+    private int start, tailLength;
+
+    private final List<Replacement> mReplacements;
+
+    private int composedStart, composedEnd;
+    private CharSequence mComposedText;
+
+    /**
+     *
+     * @param length Length of the text the recorded changes apply to
+     */
+    ComposedEdit(int length) {
+        initialLength = length;
+        this.length = length;
+        start = length;
+        tailLength = length;
+        mReplacements = new ArrayList<>();
+    }
+
+    /**
+     * Records a change, without applying it to any text.
+     *
+     * @throws IndexOutOfBoundsException If the change does not fit the text as it would be after
+     * the changes recorded so far
+     */
+    @Override
+    public void replace(int start, int end, CharSequence text) {
+
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException(
+                    "start " + start + ", end " + end + ", length " + length
+            );
+        }
+
+        this.start = Math.min(this.start, start);
+        tailLength = Math.min(tailLength, length - end);
+
+        mReplacements.add(new Replacement(start, end, text));
+
+        length += text.length() - (end - start);
+
+    }
+
+    /**
+     * Unused, as there is no cursor.
+     */
+    @Override
+    public void setSelection(int index) {
+        //Unused
+    }
+
+    /**
+     *
+     * @return Length of the text after the changes recorded so far.
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Unsupported, as only the changes to the text are known.
+     */
+    @Override
+    public char charAt(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unsupported, as only the changes to the text are known.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Composes recorded changes into a single replacement, to be applied with
+     * {@link #apply(TextTarget)}.
+     *
+     * @param text Text the recorded changes apply to
+     * @return True if the recorded changes alter text, or false if they cancel each other out.
+     */
+    boolean compose(CharSequence text) {
+
+        if (mReplacements.isEmpty()) return false;
+
+        if (text.length() != initialLength) {
+            throw new IndexOutOfBoundsException(
+                    "length " + text.length() + ", expected " + initialLength
+            );
+        }
+
+        final int oldEnd = initialLength - tailLength;
+
+        final String oldSection = text.subSequence(start, oldEnd).toString();
+        final StringBuilder newSection = new StringBuilder(oldSection);
+
+        for (Replacement replacement : mReplacements) {
+            newSection.delete(replacement.start - start, replacement.end - start);
+            newSection.insert(replacement.start - start, replacement.text);
+        }
+
+        final int oldLength = oldSection.length();
+        final int newLength = newSection.length();
+        final int maxLength = Math.min(oldLength, newLength);
+
+        int prefix = 0;
+        while (prefix < maxLength && oldSection.charAt(prefix) == newSection.charAt(prefix)) {
+            prefix++;
+        }
+
+        if (prefix == oldLength && oldLength == newLength) return false;
+
+        int suffix = 0;
+        while (suffix < maxLength - prefix && oldSection.charAt(oldLength - suffix - 1)
+                == newSection.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+
+        composedStart = start + prefix;
+        composedEnd = oldEnd - suffix;
+        mComposedText = newSection.substring(prefix, newLength - suffix);
+
+        return true;
+
+    }
+
+    /**
+     * Applies the replacement found by {@link #compose(CharSequence)}.
+     *
+     * @param text Text passed to {@link #compose(CharSequence)}, or an identical copy of it
+     */
+    void apply(TextTarget text) {
+        text.replace(composedStart, composedEnd, mComposedText);
+    }
+
+    private static final class Replacement {
+
+        private final int start, end;
+        private final CharSequence text;
+
+        Replacement(int start, int end, CharSequence text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+    }
+
+}
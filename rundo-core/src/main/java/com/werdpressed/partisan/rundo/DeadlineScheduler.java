@@ -0,0 +1,210 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Scheduler} which keeps a deadline for each delayed task, and posts a single check to
+ * another Scheduler at the earliest of them, rather than posting each task itself. Shared by any
+ * number of {@link HistoryEngine}s, for example every field on a screen.
+ *
+ * A {@link HistoryEngine} restarts its countdown with each change to the text. With this, a
+ * restart only moves the deadline of its task, and nothing is posted or removed from the other
+ * Scheduler, so typing no longer adds and removes a message for each char in each field. When the
+ * check runs, every task whose deadline has passed is run, and the check is posted again for the
+ * earliest deadline left.
+ *
+ * Posting a task again with {@link #postDelayed(Runnable, long)} replaces its deadline, rather than
+ * running it twice. {@link #postDelayed(Runnable, long)} and {@link #removeCallbacks(Runnable)}
+ * must be called on the thread the other Scheduler runs tasks on. {@link #post(Runnable)} may be
+ * called from any thread, if the other Scheduler allows it.
+ *
+ * @author Tom Calver
+ */
+public final class DeadlineScheduler implements Scheduler {
+
+    /**
+     * Deadlines within this of the time a check runs are treated as passed, as the other
+     * Scheduler may measure time with a different clock.
+     */
+    private static final long TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Scheduler mScheduler;
+    private final Runnable mCheck;
+
+    private Runnable[] mTasks;
+    private long[] deadlines;
+    private int taskCount;
+
+    /**
+     * Tasks being run by {@link #runExpiredTasks()}, reused between checks.
+     */
+    private Runnable[] mExpiredTasks;
+    private boolean isRunningExpiredTasks;
+
+    private boolean isCheckPosted;
+    private long checkDeadline;
+
+    /**
+     *
+     * @param scheduler Scheduler to post checks and other tasks to
+     */
+    public DeadlineScheduler(Scheduler scheduler) {
+
+        mScheduler = scheduler;
+        mCheck = new Runnable() {
+            @Override
+            public void run() {
+                runExpiredTasks();
+            }
+        };
+
+        mTasks = new Runnable[4];
+        deadlines = new long[4];
+        mExpiredTasks = new Runnable[4];
+
+    }
+
+    @Override
+    public void post(Runnable task) {
+        mScheduler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+
+        final int index = indexOf(task);
+
+        if (index >= 0) {
+            deadlines[index] = deadline;
+        } else {
+            add(task, deadline);
+        }
+
+        //A later deadline is found when the check already posted runs
+        if (!isCheckPosted || deadline - checkDeadline < 0) postCheck(deadline);
+
+    }
+
+    /**
+     * Removes the deadline of task. The check posted for it, if any, is left to run, and posts
+     * itself again only if other deadlines remain.
+     */
+    @Override
+    public void removeCallbacks(Runnable task) {
+
+        final int index = indexOf(task);
+
+        if (index >= 0) remove(index);
+
+    }
+
+    private void runExpiredTasks() {
+
+        isCheckPosted = false;
+
+        final long now = System.nanoTime();
+
+        //A task may run a nested check, if the other Scheduler runs tasks as they are posted
+        final boolean isNested = isRunningExpiredTasks;
+
+        if (!isNested && mExpiredTasks.length < taskCount) {
+            mExpiredTasks = new Runnable[mTasks.length];
+        }
+
+        //Removed before any are run, as tasks may post themselves again
+        final Runnable[] expired = (isNested) ? new Runnable[taskCount] : mExpiredTasks;
+        int expiredCount = 0;
+
+        for (int i = 0; i < taskCount; ) {
+            if (deadlines[i] - now <= TOLERANCE_NANOS) {
+                expired[expiredCount++] = mTasks[i];
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+
+        isRunningExpiredTasks = true;
+
+        try {
+            for (int i = 0; i < expiredCount; i++) {
+                expired[i].run();
+            }
+        } finally {
+            isRunningExpiredTasks = isNested;
+            //Not kept reachable from here once run
+            Arrays.fill(expired, 0, expiredCount, null);
+        }
+
+        if (taskCount > 0 && !isCheckPosted) postCheck(getEarliestDeadline());
+
+    }
+
+    private void postCheck(long deadline) {
+
+        if (isCheckPosted) mScheduler.removeCallbacks(mCheck);
+
+        final long delayNanos = Math.max(0, deadline - System.nanoTime());
+
+        //Rounded up, so that the check does not run before the deadline
+        mScheduler.postDelayed(mCheck, TimeUnit.NANOSECONDS.toMillis(delayNanos + 999999));
+
+        isCheckPosted = true;
+        checkDeadline = deadline;
+
+    }
+
+    private long getEarliestDeadline() {
+
+        long earliest = deadlines[0];
+
+        for (int i = 1; i < taskCount; i++) {
+            if (deadlines[i] - earliest < 0) earliest = deadlines[i];
+        }
+
+        return earliest;
+
+    }
+
+    private int indexOf(Runnable task) {
+
+        for (int i = 0; i < taskCount; i++) {
+            if (mTasks[i] == task) return i;
+        }
+
+        return -1;
+
+    }
+
+    private void add(Runnable task, long deadline) {
+
+        if (taskCount == mTasks.length) {
+            mTasks = Arrays.copyOf(mTasks, taskCount * 2);
+            deadlines = Arrays.copyOf(deadlines, taskCount * 2);
+        }
+
+        mTasks[taskCount] = task;
+        deadlines[taskCount] = deadline;
+        taskCount++;
+
+    }
+
+    /**
+     * Removes the task at index, keeping the others in the order they were first posted.
+     */
+    private void remove(int index) {
+
+        final int moved = taskCount - index - 1;
+
+        System.arraycopy(mTasks, index + 1, mTasks, index, moved);
+        System.arraycopy(deadlines, index + 1, deadlines, index, moved);
+
+        taskCount--;
+        mTasks[taskCount] = null;
+
+    }
+
+}
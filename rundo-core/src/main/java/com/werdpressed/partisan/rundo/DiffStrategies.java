@@ -0,0 +1,128 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Built in implementations of {@link DiffStrategy}.
+ *
+ * @author Tom Calver
+ */
+public final class DiffStrategies {
+
+    /**
+     * Combined length of old and new changed text below which {@link #AUTOMATIC} stores a change
+     * as a single hunk, as the saving from finding unchanged text within it is too small to be
+     * worth the search.
+     */
+    public static final int MIN_MULTI_HUNK_LENGTH = 64;
+
+    /**
+     * Combined length of old and new changed text above which {@link #AUTOMATIC} stores a change
+     * as a single hunk, as a search over that much text is unlikely to complete within the time
+     * budget.
+     */
+    public static final int MAX_MULTI_HUNK_LENGTH = 4 * 1024 * 1024;
+
+    /**
+     * Combined length of old and new text above which {@link #AUTOMATIC} stores a change as a
+     * single hunk if the combined length of old and new changed text is above
+     * {@link #MAX_LARGE_TEXT_MULTI_HUNK_LENGTH}. Finding the changed region in that much text has
+     * already used part of the time budget, and a search over a region of mid size or more, whose
+     * cost grows with the number of changes within it as well as its length, is then likely to run
+     * out of time, wasting both.
+     */
+    public static final int LARGE_TEXT_LENGTH = 1024 * 1024;
+
+    /**
+     * Combined length of old and new changed text above which {@link #AUTOMATIC} stores a change
+     * as a single hunk, in place of {@link #MAX_MULTI_HUNK_LENGTH}, once the text is longer than
+     * {@link #LARGE_TEXT_LENGTH}.
+     */
+    public static final int MAX_LARGE_TEXT_MULTI_HUNK_LENGTH = 64 * 1024;
+
+    /**
+     * Stores a single hunk, from the first changed char to the last. Time taken grows with the
+     * length of the text, but not the size of the change.
+     */
+    public static final DiffStrategy PREFIX_SUFFIX = new DiffStrategy() {
+        @Override
+        public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+
+            final SubtractStrings subtractStrings = new SubtractStrings(oldText, newText);
+
+            if (subtractStrings.getDeviationType() != SubtractStrings.UNCHANGED) {
+                hunks.add(
+                        subtractStrings.getFirstDeviation(),
+                        subtractStrings.getLastDeviationOldText(),
+                        subtractStrings.getFirstDeviation(),
+                        subtractStrings.getLastDeviationNewText()
+                );
+            }
+
+            return true;
+        }
+    };
+
+    /**
+     * Stores each separate change as its own hunk, as found by {@link MyersDiff}. Time taken grows
+     * with both the length of the text and the size of the change.
+     */
+    public static final DiffStrategy MULTI_HUNK = new DiffStrategy() {
+        @Override
+        public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+            return new MyersDiff(oldText, newText, hunks).findHunks(
+                    0, oldText.length(), newText.length());
+        }
+    };
+
+    /**
+     * Stores the whole of old and new text as a single hunk, without comparing them. Used when
+     * another strategy fails or runs out of time.
+     */
+    public static final DiffStrategy WHOLE_REPLACE = new DiffStrategy() {
+        @Override
+        public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+            hunks.add(0, oldText.length(), 0, newText.length());
+            return true;
+        }
+    };
+
+    /**
+     * Chooses by the length of the text and the size of the change. Finds the changed region as
+     * {@link #PREFIX_SUFFIX} does, and then, if its length is between
+     * {@link #MIN_MULTI_HUNK_LENGTH} and {@link #MAX_MULTI_HUNK_LENGTH}, or
+     * {@link #MAX_LARGE_TEXT_MULTI_HUNK_LENGTH} if the text is longer than
+     * {@link #LARGE_TEXT_LENGTH}, searches it for separate changes as {@link #MULTI_HUNK} does. If
+     * that search runs out of time, the changed region is stored as a single hunk. This is the
+     * default strategy.
+     */
+    public static final DiffStrategy AUTOMATIC = new DiffStrategy() {
+        @Override
+        public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+
+            final SubtractStrings subtractStrings = new SubtractStrings(oldText, newText);
+
+            if (subtractStrings.getDeviationType() == SubtractStrings.UNCHANGED) return true;
+
+            final int start = subtractStrings.getFirstDeviation();
+            final int oldEnd = subtractStrings.getLastDeviationOldText();
+            final int newEnd = subtractStrings.getLastDeviationNewText();
+            final int changedLength = (oldEnd - start) + (newEnd - start);
+            final int maxMultiHunkLength = (oldText.length() + newText.length() > LARGE_TEXT_LENGTH)
+                    ? MAX_LARGE_TEXT_MULTI_HUNK_LENGTH
+                    : MAX_MULTI_HUNK_LENGTH;
+
+            if (changedLength >= MIN_MULTI_HUNK_LENGTH && changedLength <= maxMultiHunkLength) {
+                //Hunks are only reported once the search is complete
+                if (new MyersDiff(oldText, newText, hunks).findHunks(start, oldEnd, newEnd)) {
+                    return true;
+                }
+            }
+
+            hunks.add(start, oldEnd, start, newEnd);
+            return true;
+
+        }
+    };
+
+    private DiffStrategies() { throw new AssertionError(); }
+
+}
@@ -0,0 +1,55 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Finds the changes between the old and new text of a commit, as a series of hunks. Built in
+ * strategies are available from {@link DiffStrategies}, and custom strategies, for example ones
+ * that understand the structure of source code, can be set with
+ * {@link History#setDiffStrategy(DiffStrategy)}.
+ *
+ * Strategies are called on a background thread, and may be called for several
+ * {@link History} instances, so should hold no state between calls.
+ *
+ * @author Tom Calver
+ */
+public interface DiffStrategy {
+
+    /**
+     * Reports each hunk to hunks, in order.
+     *
+     * @param oldText Text before changes
+     * @param newText Text after changes
+     * @param hunks Receives hunks, and reports whether the time budget for this commit has passed
+     * @return True if all hunks were reported. False to discard any reported hunks and store the
+     * whole of both texts as a single replacement instead, which should be done if
+     * {@link Hunks#isOverBudget()} returns true part way through.
+     */
+    boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks);
+
+    /**
+     * Receives hunks from a {@link DiffStrategy}.
+     */
+    interface Hunks {
+
+        /**
+         * Adds a hunk, in which old text between oldStart and oldEnd was replaced by new text
+         * between newStart and newEnd. Hunks must be added in order of index, and must not overlap.
+         * Text between hunks must be unchanged, and so of equal length in old and new text.
+         *
+         * @throws IllegalArgumentException If the hunk does not follow the previous one, in
+         * which case the whole of both texts is stored as a single replacement
+         */
+        void add(int oldStart, int oldEnd, int newStart, int newEnd);
+
+        /**
+         *
+         * @return True once the time budget for this commit, set with
+         * {@link History#setDiffTimeBudget(long)}, has passed, or once the text has changed again
+         * and this commit has been merged into the next. Long running strategies should check
+         * this periodically, and return false from
+         * {@link DiffStrategy#findHunks(CharSequence, CharSequence, Hunks)} once it is true.
+         */
+        boolean isOverBudget();
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+/**
+ * Accumulates the section of text altered by a series of changes, as reported by
+ * {@link HistoryEngine#beforeTextChanged(CharSequence, int, int, int)}.
+ *
+ * The range begins at the same index in both the text before the first change and the text after
+ * the last, and ends at {@link #getOldEnd()} and {@link #getNewEnd()} respectively. Unless old
+ * text is kept elsewhere, chars from before the first change that fall within the range are
+ * copied as each change arrives, so that the old and new sections can be compared without either
+ * full text.
+ *
+ * @author Tom Calver
+ */
+final class DirtyRange {
+
+    private final StringBuilder mOldText;
+    private final boolean isOldTextCopied;
+
+    private int start = -1;
+    private int oldEnd, newEnd;
+
+    /**
+     *
+     * @param isOldTextCopied False if only the bounds of the range are needed, for example
+     *                        because old text is kept in a {@link GapBuffer}
+     */
+    DirtyRange(boolean isOldTextCopied) {
+        mOldText = new StringBuilder();
+        this.isOldTextCopied = isOldTextCopied;
+    }
+
+    /**
+     * Extends the range to cover a change. Must be called before the change is applied.
+     *
+     * @param s Text before the change
+     * @param start Index of the first char in s that will change
+     * @param count Number of chars from start that will be replaced
+     * @param after Number of chars that will replace them
+     */
+    void add(CharSequence s, int start, int count, int after) {
+
+        final int end = start + count;
+
+        if (isEmpty()) {
+            this.start = start;
+            oldEnd = end;
+            newEnd = start + after;
+            if (isOldTextCopied) mOldText.append(s, start, end);
+            return;
+        }
+
+        //Chars outside the range are unchanged since the first change, so are copied from s.
+        if (start < this.start) {
+            if (isOldTextCopied) mOldText.insert(0, s, start, this.start);
+            this.start = start;
+        }
+
+        if (end > newEnd) {
+            if (isOldTextCopied) mOldText.append(s, newEnd, end);
+            oldEnd += (end - newEnd);
+            newEnd = end;
+        }
+
+        newEnd += (after - count);
+
+    }
+
+    void clear() {
+        mOldText.setLength(0);
+        start = -1;
+    }
+
+    boolean isEmpty() {
+        return (start == -1);
+    }
+
+    /**
+     *
+     * @return First index of the range, in relation to both old and new text.
+     */
+    int getStart() {
+        return start;
+    }
+
+    /**
+     *
+     * @return End index of the range, in relation to old text.
+     */
+    int getOldEnd() {
+        return oldEnd;
+    }
+
+    /**
+     *
+     * @return End index of the range, in relation to new text.
+     */
+    int getNewEnd() {
+        return newEnd;
+    }
+
+    /**
+     * Compares the old text copied with the same range of new text, without copying either.
+     *
+     * @param s Text after the last change
+     * @return True if the section of s between {@link #getStart()} and {@link #getNewEnd()} is the
+     * same as the old text, so that the changes made cancel each other out.
+     */
+    boolean isOldTextEqualTo(CharSequence s) {
+        return isOldTextCopied && !isEmpty()
+                && newEnd - start == mOldText.length()
+                && SubtractStringUtils.regionMatches(mOldText, 0, s, start, mOldText.length());
+    }
+
+    /**
+     *
+     * @return Section of old text between {@link #getStart()} and {@link #getOldEnd()}, or an
+     * empty String if old text is not copied.
+     */
+    String getOldText() {
+        return mOldText.toString();
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts each change reported by a {@link HistoryEngine} directly into a
+ * {@link SubtractStrings.Item}, for {@link History#TRACKING_MODE_COALESCE}, and decides whether it
+ * continues the typing run held at the front of the undo queue.
+ *
+ * A change continues a run if it is of the same type as the Item at the front of the queue, and
+ * begins where that Item ends: typing forwards, deleting backwards, or deleting forwards from the
+ * same index. Any other change, such as one made after the cursor moves, begins a new run, as does
+ * any change that would take a run past {@link #MAX_RUN_LENGTH}. Only the changed chars are read,
+ * so the cost of each change depends on its size rather than the size of the text.
+ *
+ * @author Tom Calver
+ */
+final class EditCoalescer {
+
+    /**
+     * Max number of chars in a single run. Each merge copies the text of the run so far, so this
+     * keeps the cost of each change low during long runs of typing.
+     */
+    static final int MAX_RUN_LENGTH = 1024;
+
+    private String mReplacedText = "";
+
+    private SubtractStrings.Item mRunItem;
+    private long lastChangeNanos;
+
+    /**
+     * Copies the chars that are about to be replaced. Must be called before each change.
+     *
+     * @see HistoryEngine#beforeTextChanged(CharSequence, int, int, int)
+     */
+    void setReplacedText(CharSequence s, int start, int count) {
+        mReplacedText = SubtractStringUtils.substring(s, start, start + count);
+    }
+
+    /**
+     *
+     * @see HistoryEngine#onTextChanged(CharSequence, int, int, int)
+     * @return Item describing the change, or null if it left the text unchanged. Chars equal at
+     * the start or end of the replaced and inserted text are omitted, so a keyboard that replaces
+     * a whole word to add a single char produces an addition of that char.
+     */
+    SubtractStrings.Item getItem(CharSequence s, int start, int count) {
+
+        final String replacedText = mReplacedText;
+        mReplacedText = "";
+
+        final int end = start + count;
+
+        int prefix = 0;
+        while (prefix < replacedText.length() && start + prefix < end
+                && replacedText.charAt(prefix) == s.charAt(start + prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < replacedText.length() - prefix && end - suffix > start + prefix
+                && replacedText.charAt(replacedText.length() - 1 - suffix)
+                        == s.charAt(end - 1 - suffix)) {
+            suffix++;
+        }
+
+        final int firstDeviation = start + prefix;
+        final int lastDeviationOldText = start + replacedText.length() - suffix;
+        final int lastDeviationNewText = end - suffix;
+
+        final int deviationType;
+
+        if (lastDeviationOldText == firstDeviation) {
+            if (lastDeviationNewText == firstDeviation) return null;
+            deviationType = SubtractStrings.ADDITION;
+        } else if (lastDeviationNewText == firstDeviation) {
+            deviationType = SubtractStrings.DELETION;
+        } else {
+            deviationType = SubtractStrings.REPLACEMENT;
+        }
+
+        return new SubtractStrings.Item(
+                firstDeviation,
+                lastDeviationOldText,
+                lastDeviationNewText,
+                deviationType,
+                replacedText.substring(prefix, replacedText.length() - suffix),
+                SubtractStringUtils.substring(s, firstDeviation, lastDeviationNewText)
+        );
+
+    }
+
+    /**
+     *
+     * @param head Item at the front of the undo queue, or null if it is empty
+     * @param item Item returned by {@link #getItem(CharSequence, int, int)}
+     * @param maxPauseMillis Time after the previous change beyond which a new run begins
+     * @return True if item should be merged into head with {@link #merge(SubtractStrings.Item,
+     * SubtractStrings.Item, TextBuffer)}, rather than added to the undo queue
+     */
+    boolean isRunContinued(SubtractStrings.Item head, SubtractStrings.Item item, long maxPauseMillis) {
+
+        final long now = System.nanoTime();
+        final long pause = now - lastChangeNanos;
+        lastChangeNanos = now;
+
+        //Any other Item at the front means the queue was altered since the run was last extended
+        return head != null
+                && head == mRunItem
+                && pause < TimeUnit.MILLISECONDS.toNanos(maxPauseMillis)
+                && canMerge(head, item);
+
+    }
+
+    /**
+     * Sets the Item at the front of the undo queue that later changes may be merged into.
+     *
+     * @param item Item at the front of the undo queue, or null to begin a new run with the next
+     *             change
+     */
+    void setRunItem(SubtractStrings.Item item) {
+        mRunItem = item;
+    }
+
+    static boolean canMerge(SubtractStrings.Item head, SubtractStrings.Item item) {
+
+        final int headType = head.getDeviationType();
+
+        if (headType != item.getDeviationType()
+                || head.getTextLength() + item.getTextLength() > MAX_RUN_LENGTH) {
+            return false;
+        }
+
+        switch (headType) {
+            case SubtractStrings.ADDITION:
+                return item.getFirstDeviation() == head.getLastDeviationNewText();
+            case SubtractStrings.DELETION:
+                return item.getLastDeviationOldText() == head.getFirstDeviation()
+                        || item.getFirstDeviation() == head.getFirstDeviation();
+            default:
+                return false;
+        }
+
+    }
+
+    /**
+     *
+     * @param head Item at the front of the undo queue
+     * @param item Item for which {@link #canMerge(SubtractStrings.Item, SubtractStrings.Item)}
+     *             returns true
+     * @param buffer Buffer in which to store text appended to that of head
+     * @return Single Item equivalent to redoing head followed by item
+     */
+    static SubtractStrings.Item merge(
+            SubtractStrings.Item head,
+            SubtractStrings.Item item,
+            TextBuffer buffer
+    ) {
+
+        if (head.getDeviationType() == SubtractStrings.ADDITION) {
+            return buffer.store(new SubtractStrings.Item(
+                    head.getFirstDeviation(),
+                    head.getFirstDeviation(),
+                    item.getLastDeviationNewText(),
+                    SubtractStrings.ADDITION,
+                    "",
+                    buffer.concat(head.getAlteredText(), item.getAlteredText())
+            ));
+        }
+
+        //Backspace removes chars before those already deleted, forward delete those after. Text
+        //can only be appended in the buffer, so that deleted by backspace is held as a String.
+        final CharSequence replacedText = (item.getFirstDeviation() < head.getFirstDeviation())
+                ? item.getReplacedText().toString() + head.getReplacedText()
+                : buffer.concat(head.getReplacedText(), item.getReplacedText());
+        final int firstDeviation = item.getFirstDeviation();
+
+        final SubtractStrings.Item merged = new SubtractStrings.Item(
+                firstDeviation,
+                firstDeviation + replacedText.length(),
+                firstDeviation,
+                SubtractStrings.DELETION,
+                replacedText,
+                ""
+        );
+
+        //Text deleted by backspace is rebuilt with each char, so is not copied into the buffer
+        return (replacedText instanceof String) ? merged : buffer.store(merged);
+
+    }
+
+}
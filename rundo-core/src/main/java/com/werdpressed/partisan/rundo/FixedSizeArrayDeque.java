@@ -0,0 +1,211 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayDeque;
+
+/**
+ * Implementation of <code>ArrayDeque</code> class that adds a fixed, maximum capacity. Capacity
+ * may be bounded by the number of elements, by the memory used by elements that implement
+ * {@link Measurable}, or both. When adding an element exceeds either bound, elements are removed
+ * from the opposite end of the deque until it fits, though the newly added element is always
+ * kept.
+ *
+ * Thanks to contributors on StackOverflow at <a href="http://stackoverflow.com/questions/30324358/which-collection-type-is-most-appropriate-for-a-constantly-updated-fixed-size-a/30324618#30324618">this</a> post.
+ *
+ * @author Tom Calver
+ */
+public final class FixedSizeArrayDeque<T> extends ArrayDeque<T> {
+
+    /**
+     * Pass as <code>maxSize</code> to bound capacity by memory alone.
+     */
+    public static final int UNBOUNDED_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Pass as <code>maxSizeInBytes</code> to bound capacity by number of elements alone.
+     */
+    public static final long UNBOUNDED_SIZE_IN_BYTES = Long.MAX_VALUE;
+
+    private static final int MAX_INITIAL_CAPACITY = 16;
+
+    /**
+     * Max capacity for <code>ArrayDeque</code>.
+     */
+    private final int maxSize;
+
+    /**
+     * Max memory, in bytes, used by elements of <code>ArrayDeque</code>.
+     */
+    private final long maxSizeInBytes;
+
+    private long sizeInBytes;
+
+    /**
+     * Elements removed to make room for new ones since {@link #clearEvictions()} was last called.
+     */
+    private int evictionCount;
+    private long evictedSizeInBytes;
+
+    /**
+     * Creates <code>ArrayDeque</code> with fixed, maximum capacity of <code>maxSize</code>.
+     *
+     * @param maxSize Max capacity for <code>ArrayDeque</code>.
+     */
+    public FixedSizeArrayDeque(int maxSize) {
+        this(maxSize, UNBOUNDED_SIZE_IN_BYTES);
+    }
+
+    /**
+     * Creates <code>ArrayDeque</code> with fixed, maximum capacity of <code>maxSize</code>
+     * elements, which together use no more than <code>maxSizeInBytes</code>.
+     *
+     * @param maxSize Max capacity for <code>ArrayDeque</code>, or {@link #UNBOUNDED_SIZE}
+     * @param maxSizeInBytes Max memory used by elements, as reported by
+     *                       {@link Measurable#getSizeInBytes()}, or
+     *                       {@link #UNBOUNDED_SIZE_IN_BYTES}
+     */
+    public FixedSizeArrayDeque(int maxSize, long maxSizeInBytes) {
+        super(Math.min(maxSize, MAX_INITIAL_CAPACITY));
+        this.maxSize = maxSize;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Inserts the specified element at the front of the deque
+     * @param t The element to add
+     */
+    @Override
+    public void addFirst(T t) {
+        if (maxSize == size()) {
+            onEvicted(removeLast());
+        }
+        super.addFirst(t);
+        sizeInBytes += sizeInBytesOf(t);
+        while (sizeInBytes > maxSizeInBytes && size() > 1) {
+            onEvicted(removeLast());
+        }
+    }
+
+    /**
+     * Inserts the specified element at the end of the deque
+     * @param t The element to add
+     */
+    @Override
+    public void addLast(T t) {
+        if (maxSize == size()) {
+            onEvicted(removeFirst());
+        }
+        super.addLast(t);
+        sizeInBytes += sizeInBytesOf(t);
+        while (sizeInBytes > maxSizeInBytes && size() > 1) {
+            onEvicted(removeFirst());
+        }
+    }
+
+    /*
+     * All other methods that remove an element from either end of ArrayDeque do so through
+     * pollFirst() and pollLast().
+     */
+
+    @Override
+    public T pollFirst() {
+        final T t = super.pollFirst();
+        sizeInBytes -= sizeInBytesOf(t);
+        return t;
+    }
+
+    @Override
+    public T pollLast() {
+        final T t = super.pollLast();
+        sizeInBytes -= sizeInBytesOf(t);
+        return t;
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        final boolean isRemoved = super.removeFirstOccurrence(o);
+        if (isRemoved) sizeInBytes -= sizeInBytesOf(o);
+        return isRemoved;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        final boolean isRemoved = super.removeLastOccurrence(o);
+        if (isRemoved) sizeInBytes -= sizeInBytesOf(o);
+        return isRemoved;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        sizeInBytes = 0;
+    }
+
+    /**
+     *
+     * @return Memory used by all elements that implement {@link Measurable}, in bytes.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     *
+     * @return Max capacity, as passed to the constructor.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     *
+     * @return Max memory used by elements, as passed to the constructor.
+     */
+    public long getMaxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    /**
+     *
+     * @return Number of elements removed by {@link #addFirst(Object)} and {@link #addLast(Object)}
+     * to make room, since {@link #clearEvictions()} was last called.
+     */
+    int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     *
+     * @return Memory freed by the elements counted by {@link #getEvictionCount()}, in bytes.
+     */
+    long getEvictedSizeInBytes() {
+        return evictedSizeInBytes;
+    }
+
+    void clearEvictions() {
+        evictionCount = 0;
+        evictedSizeInBytes = 0;
+    }
+
+    private void onEvicted(T t) {
+        evictionCount++;
+        evictedSizeInBytes += sizeInBytesOf(t);
+    }
+
+    private static long sizeInBytesOf(Object o) {
+        return (o instanceof Measurable) ? ((Measurable) o).getSizeInBytes() : 0;
+    }
+
+    /**
+     * Implemented by elements which report the memory they use, so that a
+     * {@link FixedSizeArrayDeque} may be bounded by memory rather than number of elements.
+     */
+    public interface Measurable {
+
+        /**
+         *
+         * @return Approximate memory used by this element, in bytes.
+         */
+        long getSizeInBytes();
+
+    }
+}
\ No newline at end of file
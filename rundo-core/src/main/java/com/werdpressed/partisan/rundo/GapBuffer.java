@@ -0,0 +1,192 @@
+package com.werdpressed.partisan.rundo;
+
+import java.nio.CharBuffer;
+
+/**
+ * Mutable text held in a single array, with a gap at the index of the most recent change. A run
+ * of changes at or near the same index, such as typing, moves only the chars between successive
+ * changes, rather than the whole text as a <code>String</code> copy would.
+ *
+ * Used by {@link HistoryEngine} to keep a copy of the text as it was at the last commit, which is
+ * updated with each commit, {@link History#undo()} and {@link History#redo()} rather than being
+ * copied again from the tracked text.
+ *
+ * @author Tom Calver
+ */
+final class GapBuffer implements TextTarget {
+
+    private static final int MIN_GAP_LENGTH = 64;
+
+    private char[] mBuffer;
+    private int gapStart, gapEnd;
+
+    /**
+     *
+     * @param text Initial text, which is copied
+     */
+    GapBuffer(CharSequence text) {
+
+        final int length = text.length();
+
+        mBuffer = new char[length + MIN_GAP_LENGTH];
+        copy(text, 0, length, mBuffer, 0);
+
+        gapStart = length;
+        gapEnd = mBuffer.length;
+
+    }
+
+    @Override
+    public void replace(int start, int end, CharSequence text) {
+
+        if (start < 0 || end < start || end > length()) {
+            throw new IndexOutOfBoundsException(
+                    "start " + start + ", end " + end + ", length " + length()
+            );
+        }
+
+        moveGap(start);
+
+        //Replaced chars are now at the start of the text after the gap
+        gapEnd += (end - start);
+
+        final int textLength = text.length();
+
+        ensureGapLength(textLength);
+        copy(text, 0, textLength, mBuffer, gapStart);
+        gapStart += textLength;
+
+    }
+
+    /**
+     * Unused, as there is no cursor.
+     */
+    @Override
+    public void setSelection(int index) {
+        //Unused
+    }
+
+    @Override
+    public int length() {
+        return mBuffer.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+        }
+
+        return (index < gapStart) ? mBuffer[index] : mBuffer[index + (gapEnd - gapStart)];
+
+    }
+
+    /**
+     *
+     * @return Copy of the chars between start and end.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    /**
+     *
+     * @param start First index, inclusive
+     * @param end Last index, exclusive
+     * @return Copy of the chars between start and end.
+     */
+    String substring(int start, int end) {
+
+        if (start < 0 || end < start || end > length()) {
+            throw new IndexOutOfBoundsException(
+                    "start " + start + ", end " + end + ", length " + length()
+            );
+        }
+
+        final int gapLength = gapEnd - gapStart;
+
+        if (end <= gapStart) return new String(mBuffer, start, end - start);
+
+        if (start >= gapStart) return new String(mBuffer, start + gapLength, end - start);
+
+        return new StringBuilder(end - start)
+                .append(mBuffer, start, gapStart - start)
+                .append(mBuffer, gapEnd, end - gapStart)
+                .toString();
+
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    private void moveGap(int index) {
+
+        if (index < gapStart) {
+            final int count = gapStart - index;
+            System.arraycopy(mBuffer, index, mBuffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            final int count = index - gapStart;
+            System.arraycopy(mBuffer, gapEnd, mBuffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+
+    }
+
+    private void ensureGapLength(int gapLength) {
+
+        if (gapEnd - gapStart >= gapLength) return;
+
+        final int length = length();
+        final int afterGapLength = mBuffer.length - gapEnd;
+
+        final char[] buffer = new char[Math.max(
+                mBuffer.length * 2,
+                length + gapLength + MIN_GAP_LENGTH
+        )];
+
+        System.arraycopy(mBuffer, 0, buffer, 0, gapStart);
+        System.arraycopy(mBuffer, gapEnd, buffer, buffer.length - afterGapLength, afterGapLength);
+
+        gapEnd = buffer.length - afterGapLength;
+        mBuffer = buffer;
+
+    }
+
+    private static void copy(CharSequence src, int start, int end, char[] dest, int destStart) {
+
+        if (src instanceof String) {
+            ((String) src).getChars(start, end, dest, destStart);
+            return;
+        }
+
+        if (src instanceof StringBuilder) {
+            ((StringBuilder) src).getChars(start, end, dest, destStart);
+            return;
+        }
+
+        if (src instanceof TextBuffer.Span) {
+            ((TextBuffer.Span) src).getChars(start, end, dest, destStart);
+            return;
+        }
+
+        if (src instanceof CharBuffer) {
+            final CharBuffer buffer = ((CharBuffer) src).duplicate();
+            buffer.position(buffer.position() + start);
+            buffer.get(dest, destStart, end - start);
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            dest[destStart + i - start] = src.charAt(i);
+        }
+
+    }
+
+}
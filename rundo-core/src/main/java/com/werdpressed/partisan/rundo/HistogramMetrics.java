@@ -0,0 +1,237 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link HistoryMetrics} which records each value into a {@link Histogram}.
+ * Use one instance per screen, or per field, to compare them, and read results with
+ * {@link #toString()} or each histogram's methods.
+ *
+ * Recording allocates nothing. Instances are not thread safe, and should be read from the thread
+ * the {@link History} is used from.
+ *
+ * @author Tom Calver
+ */
+public final class HistogramMetrics implements HistoryMetrics {
+
+    private final Histogram mCommitLatency = new Histogram();
+    private final Histogram mDiffTime = new Histogram();
+    private final Histogram mItemSize = new Histogram();
+    private final Histogram mUndoQueueEntries = new Histogram();
+    private final Histogram mUndoQueueSize = new Histogram();
+    private final Histogram mApplyTime = new Histogram();
+    private final Histogram mEvictions = new Histogram();
+
+    @Override
+    public void onCommit(long latencyNanos, long diffNanos, long itemSizeInBytes) {
+        mCommitLatency.record(latencyNanos);
+        mDiffTime.record(diffNanos);
+        mItemSize.record(itemSizeInBytes);
+    }
+
+    @Override
+    public void onQueuesChanged(int undoEntries, long undoBytes, int redoEntries, long redoBytes) {
+        mUndoQueueEntries.record(undoEntries);
+        mUndoQueueSize.record(undoBytes);
+    }
+
+    @Override
+    public void onApply(int steps, long applyNanos) {
+        mApplyTime.record(applyNanos);
+    }
+
+    @Override
+    public void onEvict(int entries, long bytes) {
+        mEvictions.record(entries);
+    }
+
+    /**
+     *
+     * @return Time, in nanoseconds, from the last change to text until it is in the undo queue.
+     */
+    public Histogram getCommitLatency() {
+        return mCommitLatency;
+    }
+
+    /**
+     *
+     * @return Time, in nanoseconds, spent comparing text for each commit.
+     */
+    public Histogram getDiffTime() {
+        return mDiffTime;
+    }
+
+    /**
+     *
+     * @return Memory, in bytes, used by each commit.
+     */
+    public Histogram getItemSize() {
+        return mItemSize;
+    }
+
+    /**
+     *
+     * @return Number of entries in the undo queue, each time the queues change.
+     */
+    public Histogram getUndoQueueEntries() {
+        return mUndoQueueEntries;
+    }
+
+    /**
+     *
+     * @return Memory, in bytes, used by the undo queue, each time the queues change.
+     */
+    public Histogram getUndoQueueSize() {
+        return mUndoQueueSize;
+    }
+
+    /**
+     *
+     * @return Time, in nanoseconds, spent changing text for each undo or redo call.
+     */
+    public Histogram getApplyTime() {
+        return mApplyTime;
+    }
+
+    /**
+     *
+     * @return Number of entries removed each time history is trimmed to make room.
+     */
+    public Histogram getEvictions() {
+        return mEvictions;
+    }
+
+    /**
+     * Clears all histograms.
+     */
+    public void reset() {
+        mCommitLatency.reset();
+        mDiffTime.reset();
+        mItemSize.reset();
+        mUndoQueueEntries.reset();
+        mUndoQueueSize.reset();
+        mApplyTime.reset();
+        mEvictions.reset();
+    }
+
+    /**
+     *
+     * @return Summary of all histograms, with times in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return "commitLatencyMs=" + mCommitLatency.toString(TimeUnit.MILLISECONDS)
+                + ", diffTimeMs=" + mDiffTime.toString(TimeUnit.MILLISECONDS)
+                + ", itemBytes=" + mItemSize
+                + ", undoQueueEntries=" + mUndoQueueEntries
+                + ", undoQueueBytes=" + mUndoQueueSize
+                + ", applyTimeMs=" + mApplyTime.toString(TimeUnit.MILLISECONDS)
+                + ", evictions=" + mEvictions;
+    }
+
+    /**
+     * Counts non negative values in buckets by powers of two, so that each is recorded in constant
+     * time and space, and percentiles are accurate to within a factor of two.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKET_COUNT = 64;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+        private long count, sum, max;
+
+        /**
+         * Records value, or zero if value is negative.
+         */
+        public void record(long value) {
+
+            if (value < 0) value = 0;
+
+            //Bucket i holds values with a bit length of i
+            mBuckets[BUCKET_COUNT - Long.numberOfLeadingZeros(value)]++;
+
+            count++;
+            sum += value;
+            if (value > max) max = value;
+
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return (count == 0) ? 0 : (double) sum / count;
+        }
+
+        /**
+         *
+         * @param percentile Between 0 and 100
+         * @return Upper bound of the bucket holding the value at percentile, which is no more than
+         * twice the value itself, or 0 if no values have been recorded.
+         */
+        public long getPercentile(double percentile) {
+
+            if (count == 0) return 0;
+
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+
+                seen += mBuckets[i];
+
+                if (seen >= rank) return Math.min(max, getUpperBound(i));
+
+            }
+
+            return max;
+
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets[i] = 0;
+            }
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                    + ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99)
+                    + ", max=" + max + "}";
+        }
+
+        /**
+         *
+         * @param unit Unit to convert values from nanoseconds to
+         * @return Summary of this histogram, with values converted from nanoseconds to unit.
+         */
+        public String toString(TimeUnit unit) {
+            return "{count=" + count
+                    + ", mean=" + getMean() / unit.toNanos(1)
+                    + ", p50=" + unit.convert(getPercentile(50), TimeUnit.NANOSECONDS)
+                    + ", p90=" + unit.convert(getPercentile(90), TimeUnit.NANOSECONDS)
+                    + ", p99=" + unit.convert(getPercentile(99), TimeUnit.NANOSECONDS)
+                    + ", max=" + unit.convert(max, TimeUnit.NANOSECONDS) + "}";
+        }
+
+        /**
+         *
+         * @return Largest value counted in the bucket at index.
+         */
+        private static long getUpperBound(int index) {
+            return (1L << index) - 1;
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.werdpressed.partisan.rundo;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * <code>History</code> implementations monitor and manipulate text, by periodically saving
+ * snippets of it to {@link java.util.Collection}s and reinstating them through {@link #undo()} and
+ * {@link #redo()} calls.
+ *
+ * @author Tom Calver
+ */
+public interface History {
+
+    int DEFAULT_QUEUE_SIZE = 10;
+    int DEFAULT_TIMER_LENGTH = 2000;
+    int DEFAULT_OFF_HEAP_THRESHOLD = Integer.MAX_VALUE;
+    long DEFAULT_DIFF_TIME_BUDGET = 100;
+
+    int TRACKING_STARTED = 12;
+    int TRACKING_CURRENT = TRACKING_STARTED + 1;
+    int TRACKING_ENDED = TRACKING_CURRENT + 1;
+
+    int TRACKING_MODE_DOCUMENT = TRACKING_ENDED + 1;
+    int TRACKING_MODE_RANGE = TRACKING_MODE_DOCUMENT + 1;
+    int TRACKING_MODE_COALESCE = TRACKING_MODE_RANGE + 1;
+
+    int GRANULARITY_TIMER = TRACKING_MODE_COALESCE + 1;
+    int GRANULARITY_WORD = GRANULARITY_TIMER + 1;
+    int GRANULARITY_LINE = GRANULARITY_WORD + 1;
+
+    /**
+     * Sets size of Undo and Redo queues. Default size is {@value #DEFAULT_QUEUE_SIZE}.
+     * Calling this clears any elements already in the queues, and removes any limit set with
+     * {@link #setHistoryMemoryBudget(long)}.
+     * @param size New queue size
+     */
+    void setQueueSize(int size);
+
+    /**
+     * Limits Undo and Redo queues by the memory used by their entries, rather than the number of
+     * entries. Each queue holds as many entries as fit within the budget, so many small changes
+     * can be kept, while a single large change removes older entries. The most recent entry is
+     * always kept, even if it alone exceeds the budget.
+     * Calling this clears any elements already in the queues, and replaces any limit set with
+     * {@link #setQueueSize(int)}.
+     * @param bytes Approximate memory available to each queue, in bytes
+     */
+    void setHistoryMemoryBudget(long bytes);
+
+    /**
+     * Keeps a journal of all changes made to the Undo and Redo queues in a file, so history can be
+     * restored after the app process has been killed or has crashed. Changes are written on a
+     * background thread shortly after they are made, and text entered so far is committed to the
+     * Undo queue and written whenever the host is paused.
+     * When an instance starts without saved state, the queues are rebuilt from the journal,
+     * providing it was made for text of the same length as the tracked text at that point.
+     * Text should therefore be restored before the host resumes.
+     * @param file File in app storage in which to keep the journal, or null to stop journaling
+     */
+    void setHistoryJournal(File file);
+
+    /**
+     * Sets time in milliseconds before text is committed to the undo queue. This timer begins
+     * immediately after text entry stops, and is reset if text changes before the timer can
+     * complete. Default value is {@value #DEFAULT_TIMER_LENGTH}.
+     * With {@link #TRACKING_MODE_COALESCE}, there is no timer, and this is instead the longest
+     * pause in typing before a new undo queue entry begins.
+     * @param lengthInMillis Time in milliseconds before text is committed to undo queue
+     */
+    void setTimerLength(long lengthInMillis);
+
+    /**
+     * Alternative to {@link #setTimerLength(long)}, which sets a range within which the timer
+     * length is chosen for each countdown, rather than a single length. The timer is lengthened
+     * for typists who pause often between changes, and for text that takes longer to compare,
+     * such as a large document, or a slow device, so that it is committed less often. Text that is
+     * small and typed steadily keeps the shortest timer, so each entry stays small. Whichever of
+     * the two methods was called last applies.
+     * @param minLengthInMillis Shortest time in milliseconds before text is committed
+     * @param maxLengthInMillis Longest time in milliseconds before text is committed
+     * @throws IllegalArgumentException If minLengthInMillis is negative, or greater than
+     * maxLengthInMillis
+     */
+    void setAdaptiveTimerLength(long minLengthInMillis, long maxLengthInMillis);
+
+    /**
+     * Sets how old and new text are compared when text is committed to the undo queue. Default is
+     * {@link DiffStrategies#AUTOMATIC}, which stores small changes as a single hunk and searches
+     * larger ones for separate changes, so only changed text is stored.
+     * @param strategy One of {@link DiffStrategies}, or a custom {@link DiffStrategy}
+     */
+    void setDiffStrategy(DiffStrategy strategy);
+
+    /**
+     * Sets time in milliseconds a {@link DiffStrategy} may spend on a single commit before it is
+     * asked to give up, in which case the whole of the old and new text is stored instead. Text is
+     * compared on a background thread, but {@link #undo()} and {@link #redo()} wait for pending
+     * commits, so this bounds how long they can be delayed. Default value is
+     * {@value #DEFAULT_DIFF_TIME_BUDGET}.
+     * @param timeBudgetInMillis Time in milliseconds before a comparison is abandoned
+     */
+    void setDiffTimeBudget(long timeBudgetInMillis);
+
+    /**
+     * Sets a {@link HistoryMetrics} to receive the time taken by each commit, undo and redo, and
+     * the size of the queues as they change. {@link HistogramMetrics} collects these into
+     * histograms. Nothing is recorded by default.
+     * @param metrics Receives values as they are recorded, or null to stop recording
+     */
+    void setHistoryMetrics(HistoryMetrics metrics);
+
+    /**
+     * Sets the length of text from which it is held in direct memory, outside the Java heap, once
+     * committed to the undo queue, so that pasting or deleting several megabytes of text does not
+     * fill the heap. Such text is only read back when it is undone or redone. By default, all text
+     * is held on the heap. Applies to text committed from then on.
+     * @param length Number of chars from which a single change is held outside the heap
+     */
+    void setOffHeapThreshold(int length);
+
+    /**
+     * Sets how changes are found when text is committed to the undo queue.
+     *
+     * With {@link #TRACKING_MODE_DOCUMENT}, the default, a copy of the text as it was at the
+     * previous commit is kept, and updated with each commit, {@link #undo()} and {@link #redo()}.
+     * Only the ranges reported as text changes are copied and compared with it, except for the
+     * first commit after this {@link History} resumes, which compares the full text so that
+     * changes made while paused are also found.
+     *
+     * With {@link #TRACKING_MODE_RANGE}, the ranges reported as text changes
+     * are accumulated until the commit, and only the text within them is copied and compared. The
+     * cost of a commit then depends on the size of the change rather than the size of the text,
+     * and no copy of the full text is kept. In this mode, changes made while this {@link History}
+     * is paused are not tracked, so the text should only be set programmatically while resumed.
+     *
+     * With {@link #TRACKING_MODE_COALESCE}, there is no timer. Each change is added to the undo
+     * queue as soon as it is made, and is merged into the entry before it if it continues the
+     * same run of typing or deleting, from the point that entry ended. Moving the cursor, switching
+     * between typing and deleting, or pausing for longer than the timer length begins a new entry.
+     * As with {@link #TRACKING_MODE_RANGE}, changes made while paused are not tracked.
+     *
+     * Text entered but not yet committed to the undo queue when this is called is not added to it.
+     * @param mode One of {@link #TRACKING_MODE_DOCUMENT}, {@link #TRACKING_MODE_RANGE} or
+     *             {@link #TRACKING_MODE_COALESCE}
+     */
+    void setTrackingMode(int mode);
+
+    /**
+     * Sets the size of each step through history.
+     *
+     * With {@link #GRANULARITY_TIMER}, the default, text entered before the timer set with
+     * {@link #setTimerLength(long)} completes is committed to the undo queue as a single entry.
+     *
+     * With {@link #GRANULARITY_WORD} or {@link #GRANULARITY_LINE}, text is also committed as soon
+     * as a word or line is completed by typing whitespace or a line break, and text added or
+     * deleted in one go, such as a paste, is stored as one entry per word or line. Each
+     * {@link #undo()} then steps back by a single word or line. Replacements of existing text are
+     * always stored as a single entry. As each entry holds less text, consider raising the limit
+     * set with {@link #setQueueSize(int)}, or using {@link #setHistoryMemoryBudget(long)}.
+     * @param granularity One of {@link #GRANULARITY_TIMER}, {@link #GRANULARITY_WORD} or
+     *                    {@link #GRANULARITY_LINE}
+     */
+    void setHistoryGranularity(int granularity);
+
+    /**
+     * Updates tracked text with text from the last entry in the undo queue, such that
+     * it reverts to an earlier state.
+     *
+     * Text entered before this call which has not yet been committed to the undo queue is
+     * committed first, so that it is the entry reverted. As text is compared in the background,
+     * the text may be updated shortly after this method returns, but always before
+     * any later {@link #undo()} or {@link #redo()} calls take effect. If the text is changed
+     * again before then, the call has no effect, as it no longer applies to the text.
+     */
+    void undo();
+
+    /**
+     * Reverts changes made by the last {@link #undo()} call. Ordered with respect to any pending
+     * commits and {@link #undo()} calls in the same way as {@link #undo()}.
+     */
+    void redo();
+
+    /**
+     * Reverts up to steps entries from the undo queue, as though {@link #undo()} were called steps
+     * times, but updates tracked text with a single change, so that only one layout pass and one
+     * round of {@code TextWatcher} callbacks results. Ordered with respect to any pending commits
+     * and other calls in the same way as {@link #undo()}.
+     * @param steps Number of entries to revert. Fewer are reverted if the undo queue holds fewer.
+     * @throws IllegalArgumentException If steps is negative
+     */
+    void undo(int steps);
+
+    /**
+     * Reinstates up to steps entries from the redo queue with a single change to tracked text, in
+     * the same way as {@link #undo(int)}.
+     * @param steps Number of entries to reinstate. Fewer are reinstated if the redo queue holds
+     *              fewer.
+     * @throws IllegalArgumentException If steps is negative
+     */
+    void redo(int steps);
+
+    /**
+     * Moves to a point in history with a single change to tracked text, by calling
+     * {@link #undo(int)} or {@link #redo(int)} with however many steps separate it from the
+     * current point once all pending commits are in the undo queue.
+     * @param historyIndex Point in history, as returned by {@link #getHistoryIndex()}. Greater
+     *                     values than can be reached move to the most recent point.
+     * @throws IllegalArgumentException If historyIndex is negative
+     */
+    void revertTo(int historyIndex);
+
+    /**
+     * Points in history are counted from the oldest entry still held in the undo queue, so they
+     * move when older entries are removed to make room for new ones.
+     * @return Number of entries in the undo queue, which is the current point in history. Text
+     * entered but not yet committed to the undo queue is not counted.
+     */
+    int getHistoryIndex();
+
+    /**
+     *
+     * @return Number of entries in both undo and redo queues, which is the most recent point in
+     * history that may be passed to {@link #revertTo(int)}.
+     */
+    int getHistorySize();
+
+    /**
+     * Changing text after {@link #undo()} would otherwise discard the entries in the redo queue.
+     * Instead, they are kept as a branch of history, which shares the entries before it with the
+     * history it left. Branches are kept within the same limits as the undo and redo queues, set
+     * with {@link #setQueueSize(int)} or {@link #setHistoryMemoryBudget(long)}, and the branch
+     * abandoned longest ago is removed first. Branches are not kept with saved state or in the
+     * journal set with {@link #setHistoryJournal(File)}.
+     * @return Branches of history which can be returned to with
+     * {@link #switchToBranch(HistoryBranch)}, most recently abandoned first.
+     */
+    List<HistoryBranch> getBranches();
+
+    /**
+     * Moves to the most recent entry of a branch with a single change to tracked text, undoing
+     * entries of the current history back to the point the branch left it, and redoing those of
+     * the branch. The part of the current history not shared with the branch is kept as a branch
+     * in its place. Ordered with respect to any pending commits and other calls in the same way
+     * as {@link #undo()}. Has no effect if the branch has since been removed.
+     * @param branch Branch returned by {@link #getBranches()}
+     */
+    void switchToBranch(HistoryBranch branch);
+
+    /**
+     * Removes all entries from both undo and redo queues.
+     */
+    void clearAllQueues();
+
+    /**
+     * Implement to receive callbacks whenever {@link #undo()} or {@link #redo()} methods are
+     * called. Calls that step through several entries at once produce one callback per entry.
+     */
+    interface Callbacks {
+
+        /**
+         * {@link #undo()} called
+         */
+        void undoCalled();
+
+        /**
+         * {@link #redo()} called
+         */
+        void redoCalled();
+
+    }
+
+}
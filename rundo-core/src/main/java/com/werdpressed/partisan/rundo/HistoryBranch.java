@@ -0,0 +1,43 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Branch of history abandoned when text was changed after {@link History#undo()}, as returned by
+ * {@link History#getBranches()}. Describes the branch as it was when returned, and is passed to
+ * {@link History#switchToBranch(HistoryBranch)} to return to it.
+ *
+ * @author Tom Calver
+ */
+public final class HistoryBranch {
+
+    private final HistoryTree.Branch mBranch;
+    private final int forkIndex;
+    private final int length;
+
+    HistoryBranch(HistoryTree.Branch branch, int forkIndex, int length) {
+        mBranch = branch;
+        this.forkIndex = forkIndex;
+        this.length = length;
+    }
+
+    /**
+     *
+     * @return Point in the current history at which this branch leaves it, as returned by
+     * {@link History#getHistoryIndex()}.
+     */
+    public int getForkIndex() {
+        return forkIndex;
+    }
+
+    /**
+     *
+     * @return Number of entries in this branch after it leaves the current history.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    HistoryTree.Branch getBranch() {
+        return mBranch;
+    }
+
+}
@@ -0,0 +1,1351 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Platform independent implementation of {@link History}, which tracks changes to a
+ * {@link TextTarget}, and reverts and reinstates them through {@link #undo()} and {@link #redo()}.
+ *
+ * Changes must be reported through {@link #beforeTextChanged(CharSequence, int, int, int)},
+ * {@link #onTextChanged(CharSequence, int, int, int)} and {@link #afterTextChanged()}, which follow
+ * the contract of the methods of the same name in Android's {@code TextWatcher}. All methods must
+ * be called from a single thread, on which the {@link Scheduler} also runs its tasks.
+ *
+ * @author Tom Calver
+ */
+public final class HistoryEngine implements History, WriteToArrayDeque {
+
+    private static final int UNDO_CALL = 0;
+    private static final int REDO_CALL = 1;
+    private static final int REVERT_CALL = 2;
+    private static final int SWITCH_CALL = 3;
+
+    private final TextTarget mText;
+    private final Scheduler mScheduler;
+    private final WriteToArrayDequeRunnable mRunnable;
+    private History.Callbacks mCallbacks;
+    private HistoryMetrics mMetrics;
+    private boolean isRunning;
+    private boolean isResumed;
+    private long lastChangeNanos;
+
+    private long countdownTimerLength;
+    private AdaptiveTimer mAdaptiveTimer;
+    private int queueSize;
+    private long historyMemoryBudget;
+    private int trackingMode;
+    private int historyGranularity;
+    private boolean isUnitEnded;
+    private DiffStrategy mDiffStrategy;
+    private long diffTimeBudget;
+
+    private FixedSizeArrayDeque<SubtractStrings.Item> mUndoQueue, mRedoQueue;
+    private final HistoryTree mTree;
+
+    private String mNewText;
+    private int trackingState;
+
+    /**
+     * Text as it was at the last commit, for {@link #TRACKING_MODE_DOCUMENT}. Kept up to date by
+     * applying each commit, {@link #undo()} and {@link #redo()}, rather than by copying the text.
+     */
+    private GapBuffer mShadow;
+    private boolean isShadowSynced;
+    private int commitStart, commitOldEnd;
+
+    private DirtyRange mDirtyRange;
+    private final EditCoalescer mEditCoalescer;
+
+    /**
+     * Holds the text of all queued Items, which refer to it rather than to copies of their own.
+     */
+    private final TextBuffer mTextBuffer;
+
+    private final ArrayDeque<PendingDiff> mPendingCommits;
+    private final ArrayDeque<DeferredCall> mDeferredCalls;
+
+    private File mJournalFile;
+    private HistoryJournal mJournal;
+    private boolean isHistoryRestored;
+
+    private HistoryPool<?> mPool;
+
+    /**
+     * Compares text on a single background thread shared by all instances.
+     *
+     * @param text Text to track
+     * @param scheduler Runs the countdown, and publishes the results of comparisons
+     */
+    public HistoryEngine(TextTarget text, Scheduler scheduler) {
+        this(text, scheduler, WriteToArrayDequeRunnable.DIFF_EXECUTOR);
+    }
+
+    /**
+     *
+     * @param text Text to track
+     * @param scheduler Runs the countdown, and publishes the results of comparisons
+     * @param diffExecutor Compares text. Must run tasks in the order they are submitted, and may
+     *                     run them immediately on the calling thread.
+     */
+    public HistoryEngine(TextTarget text, Scheduler scheduler, Executor diffExecutor) {
+        mText = text;
+        mScheduler = scheduler;
+        mRunnable = new WriteToArrayDequeRunnable(this, scheduler, diffExecutor);
+
+        countdownTimerLength = DEFAULT_TIMER_LENGTH;
+        queueSize = DEFAULT_QUEUE_SIZE;
+        historyMemoryBudget = FixedSizeArrayDeque.UNBOUNDED_SIZE_IN_BYTES;
+        trackingMode = TRACKING_MODE_DOCUMENT;
+        historyGranularity = GRANULARITY_TIMER;
+        mDiffStrategy = DiffStrategies.AUTOMATIC;
+        diffTimeBudget = DEFAULT_DIFF_TIME_BUDGET;
+        mMetrics = HistoryMetrics.NONE;
+
+        mUndoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mRedoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mTree = new HistoryTree(queueSize, historyMemoryBudget);
+
+        trackingState = TRACKING_ENDED;
+
+        mDirtyRange = new DirtyRange(false);
+        mEditCoalescer = new EditCoalescer();
+        mTextBuffer = new TextBuffer();
+
+        mPendingCommits = new ArrayDeque<>();
+        mDeferredCalls = new ArrayDeque<>();
+    }
+
+    /**
+     *
+     * @param callbacks Notified after each {@link #undo()} and {@link #redo()}, or null
+     */
+    public void setCallbacks(History.Callbacks callbacks) {
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * Call once text can be edited, for example when the host resumes. Starts the journal set with
+     * {@link #setHistoryJournal(File)}, if any.
+     */
+    public void resume() {
+        isResumed = true;
+        //Changes made while paused may not have been reported
+        isShadowSynced = false;
+        if (mJournalFile != null && mJournal == null) startJournal();
+    }
+
+    /**
+     * Call once text can no longer be edited, for example when the host pauses. If journaling,
+     * text entered so far is committed and journaled, as the process may be killed at any point
+     * after this.
+     */
+    public void pause() {
+
+        isResumed = false;
+
+        if (mJournal != null) {
+            commitPendingTextNow();
+            mJournal.flush();
+        }
+
+    }
+
+    /**
+     * Closes the journal, if any. Call once the engine is no longer used.
+     */
+    public void close() {
+        if (mJournal != null) {
+            mJournal.close();
+            mJournal = null;
+        }
+    }
+
+    /**
+     * Adds all text entered so far to the undo queue, without waiting for the countdown or for
+     * comparisons in progress on the background thread.
+     */
+    public void commit() {
+        commitPendingTextNow();
+    }
+
+    /**
+     * Must be called before each change to the text.
+     *
+     * @param s Text before the change
+     * @param start Index of the first char that will change
+     * @param count Number of chars from start that will be replaced
+     * @param after Number of chars that will replace them
+     */
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+        if (trackingMode == TRACKING_MODE_DOCUMENT && mShadow == null) {
+            mShadow = new GapBuffer(s);
+            isShadowSynced = true;
+        }
+
+        if (trackingMode == TRACKING_MODE_COALESCE) {
+            if (trackingState != TRACKING_STARTED) mEditCoalescer.setReplacedText(s, start, count);
+        } else if (trackingState != TRACKING_STARTED) {
+            //Changes made by undo() and redo() are already in the queues
+            mDirtyRange.add(s, start, count, after);
+        }
+
+        //Calls waiting on commits refer to the text as it was when they were made, so can no
+        //longer be applied once it changes again
+        if (trackingState != TRACKING_STARTED) mDeferredCalls.clear();
+
+        if (trackingState == TRACKING_ENDED) {
+
+            //Redo Queue should only be required as response to Undo calls. Otherwise clear, and
+            //keep its entries as a branch of history.
+            if (!mRedoQueue.isEmpty()) {
+                mTree.branch(mUndoQueue, mRedoQueue);
+                //The entry the branch leaves after must not be merged into
+                mEditCoalescer.setRunItem(null);
+                if (mJournal != null) mJournal.clearRedoQueue();
+                mRedoQueue.clear();
+            }
+
+            //Coalesced changes are committed as they are made, so tracking never starts
+            if (trackingMode != TRACKING_MODE_COALESCE) {
+                startCountdownRunnable();
+                trackingState = TRACKING_CURRENT;
+            }
+        }
+
+    }
+
+    /**
+     * Must be called after each change to the text.
+     *
+     * @param s Text after the change
+     * @param start Index of the first char that changed
+     * @param before Number of chars from start that were replaced
+     * @param count Number of chars that replaced them
+     */
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+
+        if (trackingMode == TRACKING_MODE_COALESCE) {
+            if (trackingState != TRACKING_STARTED) {
+                if (mAdaptiveTimer != null) mAdaptiveTimer.onTextChanged(System.nanoTime());
+                coalesceChange(s, start, count);
+            }
+            return;
+        }
+
+        //TRACKING_STARTED is held until undo() or redo() has applied every hunk of an Item
+        if (trackingState == TRACKING_CURRENT) {
+            lastChangeNanos = System.nanoTime();
+            if (mAdaptiveTimer != null) mAdaptiveTimer.onTextChanged(lastChangeNanos);
+            restartCountdownRunnable();
+            if (TextUnits.isUnitEnded(s, start, count, historyGranularity)) isUnitEnded = true;
+        }
+
+    }
+
+    /**
+     * Must be called once every listener has been notified of a change through
+     * {@link #onTextChanged(CharSequence, int, int, int)}.
+     */
+    public void afterTextChanged() {
+
+        //Committed once every listener has seen the change
+        if (isUnitEnded) {
+            isUnitEnded = false;
+            runCountdownRunnableImmediately();
+        }
+
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#getNewString()}
+     */
+    @Override
+    public String getNewString() {
+
+        mNewText = null;
+
+        final int newEnd;
+
+        if (trackingMode == TRACKING_MODE_DOCUMENT && mShadow != null && !isShadowSynced) {
+            //Changes may have been made without being reported, so all text is compared once
+            commitStart = 0;
+            commitOldEnd = mShadow.length();
+            newEnd = mText.length();
+        } else if (trackingMode != TRACKING_MODE_COALESCE && !mDirtyRange.isEmpty()) {
+            commitStart = mDirtyRange.getStart();
+            commitOldEnd = mDirtyRange.getOldEnd();
+            newEnd = mDirtyRange.getNewEnd();
+        } else {
+            return null;
+        }
+
+        //Changes that cancel each other out are dropped here, so are never compared or queued
+        if (isTextUnchanged(newEnd)) {
+            if (trackingMode == TRACKING_MODE_DOCUMENT) isShadowSynced = true;
+            mDirtyRange.clear();
+            trackingState = TRACKING_ENDED;
+            return null;
+        }
+
+        mNewText = SubtractStringUtils.substring(mText, commitStart, newEnd);
+
+        return mNewText;
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#getOldString()}
+     */
+    @Override
+    public String getOldString() {
+
+        if (mNewText == null) return null;
+
+        if (trackingMode == TRACKING_MODE_RANGE) return mDirtyRange.getOldText();
+
+        return (mShadow == null) ? null : mShadow.substring(commitStart, commitOldEnd);
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#getTextOffset()}
+     */
+    @Override
+    public int getTextOffset() {
+        return commitStart;
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#getDiffStrategy()}
+     */
+    @Override
+    public DiffStrategy getDiffStrategy() {
+        return mDiffStrategy;
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#getDiffTimeBudget()}
+     */
+    @Override
+    public long getDiffTimeBudget() {
+        return diffTimeBudget;
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#notifyArrayDequeDataPending(PendingDiff)}
+     */
+    @Override
+    public void notifyArrayDequeDataPending(PendingDiff pending) {
+
+        pending.setChangeNanos(lastChangeNanos);
+
+        final PendingDiff last = mPendingCommits.peekLast();
+
+        //Rather than wait for a stale comparison to finish, both commits are compared as one
+        if (last != null && last.cancel()) {
+            mPendingCommits.pollLast();
+            pending.mergeAfter(last, mText);
+        }
+
+        mPendingCommits.addLast(pending);
+
+        if (trackingMode == TRACKING_MODE_DOCUMENT) {
+            mShadow.replace(commitStart, commitOldEnd, mNewText);
+            isShadowSynced = true;
+        }
+
+        mDirtyRange.clear();
+
+        trackingState = TRACKING_ENDED;
+
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#notifyArrayDequeDataReady(PendingDiff, com.werdpressed.partisan.rundo.SubtractStrings.Item)}
+     */
+    @Override
+    public void notifyArrayDequeDataReady(PendingDiff pending, SubtractStrings.Item item) {
+
+        //Otherwise already added to the undo queue by commitPendingTextNow(), or cancelled and
+        //merged into a newer commit
+        if (mPendingCommits.peekFirst() == pending) {
+            mPendingCommits.pollFirst();
+            if (isChange(item)) {
+                addToUndoQueue(item);
+                reportCommit(pending, item);
+            }
+        }
+
+        runDeferredCalls();
+
+    }
+
+    /**
+     *
+     * @see {@link WriteToArrayDeque#setIsRunning(boolean)}
+     */
+    @Override
+    public void setIsRunning(boolean isRunning) {
+        this.isRunning = isRunning;
+    }
+
+    /**
+     *
+     * @see {@link History#setQueueSize(int)}
+     */
+    @Override
+    public void setQueueSize(int size) {
+        queueSize = size;
+        historyMemoryBudget = FixedSizeArrayDeque.UNBOUNDED_SIZE_IN_BYTES;
+        mUndoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mRedoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mTree.setLimits(queueSize, historyMemoryBudget);
+        if (mJournal != null) mJournal.clearAllQueues();
+    }
+
+    /**
+     *
+     * @see {@link History#setHistoryMemoryBudget(long)}
+     */
+    @Override
+    public void setHistoryMemoryBudget(long bytes) {
+        queueSize = FixedSizeArrayDeque.UNBOUNDED_SIZE;
+        historyMemoryBudget = bytes;
+        mUndoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mRedoQueue = new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+        mTree.setLimits(queueSize, historyMemoryBudget);
+        if (mJournal != null) mJournal.clearAllQueues();
+    }
+
+    /**
+     *
+     * @see {@link History#setHistoryJournal(File)}
+     */
+    @Override
+    public void setHistoryJournal(File file) {
+
+        if (mJournal != null) {
+            mJournal.close();
+            mJournal = null;
+        }
+
+        mJournalFile = file;
+
+        if (mJournalFile != null && isResumed) startJournal();
+
+    }
+
+    /**
+     *
+     * @see {@link History#setTimerLength(long)}
+     */
+    @Override
+    public void setTimerLength(long lengthInMillis) {
+        countdownTimerLength = lengthInMillis;
+        mAdaptiveTimer = null;
+    }
+
+    /**
+     *
+     * @see {@link History#setAdaptiveTimerLength(long, long)}
+     */
+    @Override
+    public void setAdaptiveTimerLength(long minLengthInMillis, long maxLengthInMillis) {
+        mAdaptiveTimer = new AdaptiveTimer(minLengthInMillis, maxLengthInMillis);
+    }
+
+    /**
+     *
+     * @see {@link History#setDiffStrategy(DiffStrategy)}
+     */
+    @Override
+    public void setDiffStrategy(DiffStrategy strategy) {
+        mDiffStrategy = strategy;
+    }
+
+    /**
+     *
+     * @see {@link History#setDiffTimeBudget(long)}
+     */
+    @Override
+    public void setDiffTimeBudget(long timeBudgetInMillis) {
+        diffTimeBudget = timeBudgetInMillis;
+    }
+
+    /**
+     *
+     * @see {@link History#setHistoryMetrics(HistoryMetrics)}
+     */
+    @Override
+    public void setHistoryMetrics(HistoryMetrics metrics) {
+        mMetrics = (metrics == null) ? HistoryMetrics.NONE : metrics;
+    }
+
+    /**
+     *
+     * @see {@link History#setOffHeapThreshold(int)}
+     */
+    @Override
+    public void setOffHeapThreshold(int length) {
+        mTextBuffer.setOffHeapThreshold(length);
+    }
+
+    /**
+     *
+     * @see {@link History#setTrackingMode(int)}
+     */
+    @Override
+    public void setTrackingMode(int mode) {
+        trackingMode = mode;
+        mDirtyRange = new DirtyRange(trackingMode == TRACKING_MODE_RANGE);
+        mEditCoalescer.setRunItem(null);
+        mShadow = null;
+    }
+
+    /**
+     *
+     * @see {@link History#setHistoryGranularity(int)}
+     */
+    @Override
+    public void setHistoryGranularity(int granularity) {
+        historyGranularity = granularity;
+    }
+
+    /**
+     *
+     * @see {@link History#undo()}
+     */
+    @Override
+    public void undo() {
+        undo(1);
+    }
+
+    /**
+     *
+     * @see {@link History#undo(int)}
+     */
+    @Override
+    public void undo(int steps) {
+        if (steps < 0) throw new IllegalArgumentException("steps " + steps + " < 0");
+        deferCall(new DeferredCall(UNDO_CALL, steps));
+    }
+
+    /**
+     *
+     * @see {@link History#redo()}
+     */
+    @Override
+    public void redo() {
+        redo(1);
+    }
+
+    /**
+     *
+     * @see {@link History#redo(int)}
+     */
+    @Override
+    public void redo(int steps) {
+        if (steps < 0) throw new IllegalArgumentException("steps " + steps + " < 0");
+        deferCall(new DeferredCall(REDO_CALL, steps));
+    }
+
+    /**
+     *
+     * @see {@link History#revertTo(int)}
+     */
+    @Override
+    public void revertTo(int historyIndex) {
+        if (historyIndex < 0) {
+            throw new IllegalArgumentException("historyIndex " + historyIndex + " < 0");
+        }
+        deferCall(new DeferredCall(REVERT_CALL, historyIndex));
+    }
+
+    /**
+     *
+     * @see {@link History#getHistoryIndex()}
+     */
+    @Override
+    public int getHistoryIndex() {
+        return mUndoQueue.size();
+    }
+
+    /**
+     *
+     * @see {@link History#getHistorySize()}
+     */
+    @Override
+    public int getHistorySize() {
+        return mUndoQueue.size() + mRedoQueue.size();
+    }
+
+    /**
+     *
+     * @see {@link History#getBranches()}
+     */
+    @Override
+    public List<HistoryBranch> getBranches() {
+        mTree.onHistoryChanged(mUndoQueue, mRedoQueue, false);
+        return mTree.getBranches(getHistory());
+    }
+
+    /**
+     *
+     * @see {@link History#switchToBranch(HistoryBranch)}
+     */
+    @Override
+    public void switchToBranch(HistoryBranch branch) {
+        deferCall(new DeferredCall(SWITCH_CALL, 0, branch.getBranch()));
+    }
+
+    /**
+     *
+     * @see {@link History#clearAllQueues()}
+     */
+    @Override
+    public void clearAllQueues() {
+        mUndoQueue.clear();
+        mRedoQueue.clear();
+        mTree.clear();
+        if (mJournal != null) mJournal.clearAllQueues();
+    }
+
+    /**
+     *
+     * @param pool Pool sharing a memory budget with this engine, or null
+     */
+    void setPool(HistoryPool<?> pool) {
+        mPool = pool;
+    }
+
+    /**
+     *
+     * @return Memory used by entries in both queues and all branches of history, in bytes.
+     */
+    long getSizeInBytes() {
+        return mUndoQueue.getSizeInBytes() + mRedoQueue.getSizeInBytes()
+                + mTree.getSizeInBytes();
+    }
+
+    /**
+     *
+     * @return Number of entries in both queues, and number of branches of history.
+     */
+    int getEntryCount() {
+        return mUndoQueue.size() + mRedoQueue.size() + mTree.size();
+    }
+
+    /**
+     * Removes the branch of history abandoned longest ago or, once there are none, the oldest
+     * entry from the undo queue or, once that is empty, the entry furthest from the current text
+     * in the redo queue.
+     *
+     * @return Memory freed, in bytes, or -1 if both queues are empty.
+     */
+    long evictOldest() {
+
+        final long sizeInBytes;
+
+        if (mTree.size() > 0) {
+            sizeInBytes = mTree.evictOldest();
+        } else {
+            final SubtractStrings.Item item =
+                    ((mUndoQueue.isEmpty()) ? mRedoQueue : mUndoQueue).pollLast();
+            sizeInBytes = (item == null) ? -1 : item.getSizeInBytes();
+        }
+
+        if (sizeInBytes < 0) return sizeInBytes;
+
+        mMetrics.onEvict(1, sizeInBytes);
+
+        //Branches left after the removed entry can no longer be reached, so are removed with it
+        final long prunedSizeInBytes = mTree.onHistoryChanged(mUndoQueue, mRedoQueue, true);
+        reportEvictions();
+
+        return sizeInBytes + prunedSizeInBytes;
+
+    }
+
+    /**
+     * Captures the queues and any text not yet committed, so that they can be saved and later
+     * passed to {@link #restoreState(State)}. Text awaiting the countdown is not committed, and
+     * the countdown is stopped.
+     */
+    State saveState() {
+
+        //Ranges can't be restarted from saved text, so are committed now. Otherwise, only
+        //commits still being compared are completed, so that they are in the undo queue.
+        if (trackingMode == TRACKING_MODE_RANGE) {
+            commitPendingTextNow();
+        } else {
+            completePendingCommits();
+        }
+
+        final State state = new State(
+                mUndoQueue,
+                mRedoQueue,
+                (mShadow != null) ? mShadow.toString() : null,
+                isRunning
+        );
+
+        if (isRunning) stopCountdownRunnable();
+
+        return state;
+
+    }
+
+    /**
+     * Reinstates state captured by {@link #saveState()}, and restarts the countdown if text was
+     * awaiting commit.
+     */
+    void restoreState(State state) {
+
+        isHistoryRestored = true;
+
+        if (state.undoQueue != null) mUndoQueue = storeAll(state.undoQueue);
+        if (state.redoQueue != null) mRedoQueue = storeAll(state.redoQueue);
+
+        //Branches of history are not saved
+        mTree.clear();
+
+        //Changes made since the saved text are found by comparing it with all of the text
+        mShadow = (trackingMode == TRACKING_MODE_DOCUMENT && state.oldText != null)
+                ? new GapBuffer(state.oldText)
+                : null;
+        isShadowSynced = false;
+
+        notifyHistoryChanged();
+
+        if (state.isCommitOutstanding) startCountdownRunnable();
+
+        trackingState = (isRunning) ? TRACKING_CURRENT : TRACKING_ENDED;
+
+    }
+
+    /**
+     * Commits text awaiting the countdown, so that it is the text call applies to, then runs call
+     * once every commit is in the undo queue. Only text entered before call is committed here, as
+     * any change made after it drops the calls still waiting.
+     */
+    private void deferCall(DeferredCall call) {
+
+        if (isRunning) runCountdownRunnableImmediately();
+
+        mDeferredCalls.addLast(call);
+
+        runDeferredCalls();
+
+    }
+
+    /**
+     * Runs {@link #undo()} and {@link #redo()} calls in the order they were made, once all text
+     * entered before each call is in the undo queue. Calls are held back while commits are being
+     * compared in the background.
+     */
+    private void runDeferredCalls() {
+
+        while (!mDeferredCalls.isEmpty()) {
+
+            if (isCommitPending()) return;
+
+            //A comparison run on this thread may have completed, and run the call, already
+            final DeferredCall call = mDeferredCalls.pollFirst();
+
+            if (call == null) return;
+
+            switch (call.type) {
+                case UNDO_CALL:
+                    undoNow(call.argument);
+                    break;
+                case REDO_CALL:
+                    redoNow(call.argument);
+                    break;
+                case REVERT_CALL:
+                    final int undoSteps = mUndoQueue.size() - call.argument;
+                    if (undoSteps > 0) {
+                        undoNow(undoSteps);
+                    } else {
+                        redoNow(-undoSteps);
+                    }
+                    break;
+                case SWITCH_CALL:
+                    switchToBranchNow(call.mBranch);
+                    break;
+                default:
+                    break;
+            }
+
+        }
+
+    }
+
+    /**
+     * Reverts up to steps entries from the front of the undo queue with a single change to the
+     * tracked text.
+     */
+    private void undoNow(int steps) {
+
+        if (steps == 0 || mUndoQueue.peek() == null) {
+            //Log.e(TAG, "Undo Queue Empty");
+            return;
+        }
+
+        final ComposedEdit edit = new ComposedEdit(mText.length());
+        final Iterator<SubtractStrings.Item> iterator = mUndoQueue.iterator();
+
+        SubtractStrings.Item temp = null;
+        int count = 0;
+
+        try {
+
+            while (count < steps && iterator.hasNext()) {
+                temp = iterator.next();
+                temp.undo(edit);
+                count++;
+            }
+
+            applyComposedEdit(edit, temp.getFirstDeviation(), count);
+
+            for (int i = 0; i < count; i++) {
+
+                temp = mUndoQueue.poll();
+
+                mRedoQueue.addFirst(temp);
+                if (mJournal != null) mJournal.undo(temp);
+
+            }
+
+            notifyHistoryChanged();
+
+            if (mCallbacks != null) {
+                for (int i = 0; i < count; i++) {
+                    mCallbacks.undoCalled();
+                }
+            }
+
+        } catch (IndexOutOfBoundsException e) {
+            e.printStackTrace();
+            //The shadow may no longer match the text, so is copied again on the next change
+            mShadow = null;
+        }
+
+    }
+
+    /**
+     * Reinstates up to steps entries from the front of the redo queue with a single change to the
+     * tracked text.
+     */
+    private void redoNow(int steps) {
+
+        if (steps == 0 || mRedoQueue.peek() == null) {
+            //Log.e(TAG, "Redo Queue Empty");
+            return;
+        }
+
+        final ComposedEdit edit = new ComposedEdit(mText.length());
+        final Iterator<SubtractStrings.Item> iterator = mRedoQueue.iterator();
+
+        SubtractStrings.Item temp = null;
+        int count = 0;
+
+        try {
+
+            while (count < steps && iterator.hasNext()) {
+                temp = iterator.next();
+                temp.redo(edit);
+                count++;
+            }
+
+            applyComposedEdit(edit, temp.getFirstDeviation(), count);
+
+            for (int i = 0; i < count; i++) {
+
+                temp = mRedoQueue.poll();
+
+                mUndoQueue.addFirst(temp);
+                if (mJournal != null) mJournal.redo(temp);
+
+            }
+
+            notifyHistoryChanged();
+
+            if (mCallbacks != null) {
+                for (int i = 0; i < count; i++) {
+                    mCallbacks.redoCalled();
+                }
+            }
+
+        } catch (IndexOutOfBoundsException e) {
+            e.printStackTrace();
+            //The shadow may no longer match the text, so is copied again on the next change
+            mShadow = null;
+        }
+
+    }
+
+    /**
+     * Moves to the last entry of branch with a single change to the tracked text, keeping the
+     * part of the current history it does not share as a branch in its place.
+     */
+    private void switchToBranchNow(HistoryTree.Branch branch) {
+
+        mTree.onHistoryChanged(mUndoQueue, mRedoQueue, false);
+
+        final List<SubtractStrings.Item> history = getHistory();
+        final List<SubtractStrings.Item> path = mTree.getPath(branch, history);
+
+        //Branch has been removed, or already switched to
+        if (path == null) return;
+
+        final int historyIndex = mUndoQueue.size();
+
+        int forkIndex = 0;
+        while (forkIndex < history.size() && forkIndex < path.size()
+                && history.get(forkIndex) == path.get(forkIndex)) {
+            forkIndex++;
+        }
+
+        final int redoIndex = Math.min(historyIndex, forkIndex);
+        final int steps = (historyIndex - redoIndex) + (path.size() - redoIndex);
+
+        final ComposedEdit edit = new ComposedEdit(mText.length());
+
+        try {
+
+            for (int i = historyIndex - 1; i >= forkIndex; i--) {
+                history.get(i).undo(edit);
+            }
+
+            for (int i = redoIndex; i < path.size(); i++) {
+                path.get(i).redo(edit);
+            }
+
+            applyComposedEdit(edit, path.get(path.size() - 1).getFirstDeviation(), steps);
+
+        } catch (IndexOutOfBoundsException e) {
+            e.printStackTrace();
+            //The shadow may no longer match the text, so is copied again on the next change
+            mShadow = null;
+            return;
+        }
+
+        final FixedSizeArrayDeque<SubtractStrings.Item> undoQueue =
+                new FixedSizeArrayDeque<>(mUndoQueue.getMaxSize(), mUndoQueue.getMaxSizeInBytes());
+
+        for (SubtractStrings.Item item : path) {
+            undoQueue.addFirst(item);
+        }
+
+        mUndoQueue = undoQueue;
+        mRedoQueue.clear();
+
+        mTree.switchTo(branch, history, path);
+
+        if (mJournal != null) mJournal.start(mText.length(), mUndoQueue, mRedoQueue);
+
+        notifyHistoryChanged();
+
+        if (mCallbacks != null) {
+            for (int i = forkIndex; i < historyIndex; i++) {
+                mCallbacks.undoCalled();
+            }
+            for (int i = redoIndex; i < path.size(); i++) {
+                mCallbacks.redoCalled();
+            }
+        }
+
+    }
+
+    /**
+     * Applies the changes recorded in edit to the tracked text and the shadow, then moves the
+     * cursor to selection.
+     *
+     * @param steps Number of entries whose changes were recorded in edit
+     * @throws IndexOutOfBoundsException If the recorded changes do not fit the tracked text
+     */
+    private void applyComposedEdit(ComposedEdit edit, int selection, int steps) {
+
+        final long startNanos = System.nanoTime();
+
+        try {
+
+            trackingState = TRACKING_STARTED;
+
+            if (edit.compose(mText)) {
+
+                edit.apply(mText);
+
+                //Changes not yet reported can't be applied to the shadow, so it is copied again
+                if (mShadow != null) {
+                    if (isShadowSynced) {
+                        edit.apply(mShadow);
+                    } else {
+                        mShadow = null;
+                    }
+                }
+
+            }
+
+            mText.setSelection(selection);
+
+            mMetrics.onApply(steps, System.nanoTime() - startNanos);
+
+        } finally {
+            trackingState = TRACKING_ENDED;
+        }
+
+    }
+
+    private void addToUndoQueue(SubtractStrings.Item item) {
+
+        //Stored first, so that each unit shares the stored text rather than copying it
+        item = mTextBuffer.store(item);
+
+        for (SubtractStrings.Item unit : TextUnits.split(item, historyGranularity)) {
+
+            unit = mTextBuffer.store(unit);
+
+            mUndoQueue.addFirst(unit);
+
+            if (mJournal != null) {
+                mJournal.commit(unit);
+                if (mJournal.isCompactionDue()) mJournal.compact(mUndoQueue, mRedoQueue);
+            }
+
+        }
+
+        notifyHistoryChanged();
+
+    }
+
+    /**
+     * Adds a change to the undo queue as soon as it is made, for {@link #TRACKING_MODE_COALESCE},
+     * merging it into the entry at the front of the queue if it continues the same run.
+     */
+    private void coalesceChange(CharSequence s, int start, int count) {
+
+        final long startNanos = System.nanoTime();
+
+        final SubtractStrings.Item item = mEditCoalescer.getItem(s, start, count);
+
+        if (item == null) return;
+
+        final long diffNanos = System.nanoTime() - startNanos;
+
+        if (mAdaptiveTimer != null) mAdaptiveTimer.onCommit(diffNanos);
+        mMetrics.onCommit(0, diffNanos, item.getSizeInBytes());
+
+        final SubtractStrings.Item head = mUndoQueue.peekFirst();
+
+        //A completed word or line ends the run, but may only be merged if typed as a single char,
+        //as pasted text is split into one entry per word or line
+        final boolean isUnitEnded = TextUnits.isUnitEnded(s, start, count, historyGranularity);
+
+        if (mEditCoalescer.isRunContinued(head, item, getTimerLength())
+                && (!isUnitEnded || count == 1)) {
+
+            final SubtractStrings.Item merged = EditCoalescer.merge(head, item, mTextBuffer);
+
+            mUndoQueue.pollFirst();
+            mUndoQueue.addFirst(merged);
+            mTree.onItemReplaced(head, merged);
+
+            if (mJournal != null) {
+                mJournal.merge(item);
+                if (mJournal.isCompactionDue()) mJournal.compact(mUndoQueue, mRedoQueue);
+            }
+
+            notifyHistoryChanged();
+
+        } else {
+            addToUndoQueue(item);
+        }
+
+        mEditCoalescer.setRunItem((isUnitEnded) ? null : mUndoQueue.peekFirst());
+
+    }
+
+    /**
+     * Opens the journal at {@link #mJournalFile}. If history has not been restored from a saved
+     * instance state, it is rebuilt from the journal, providing the journal matches the current
+     * text. The journal is then compacted to a snapshot of the current queues.
+     */
+    private void startJournal() {
+
+        //Journaled history must match the text as it is now, not as it was at the last commit
+        commitPendingTextNow();
+
+        final int textLength = mText.length();
+
+        if (!isHistoryRestored && mUndoQueue.isEmpty() && mRedoQueue.isEmpty()) {
+
+            final FixedSizeArrayDeque<SubtractStrings.Item> undoQueue =
+                    new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+            final FixedSizeArrayDeque<SubtractStrings.Item> redoQueue =
+                    new FixedSizeArrayDeque<>(queueSize, historyMemoryBudget);
+
+            final int replayedLength =
+                    HistoryJournal.replay(mJournalFile, undoQueue, redoQueue, mTextBuffer);
+
+            if (replayedLength == textLength) {
+                mUndoQueue = undoQueue;
+                mRedoQueue = redoQueue;
+                mTree.clear();
+                notifyHistoryChanged();
+            }
+
+        }
+
+        isHistoryRestored = true;
+
+        mJournal = new HistoryJournal(mJournalFile);
+        mJournal.start(textLength, mUndoQueue, mRedoQueue);
+
+    }
+
+    /**
+     *
+     * @param queue Queue of Items restored from saved state
+     * @return Queue of the same Items and limits, with all text held in {@link #mTextBuffer}.
+     */
+    private FixedSizeArrayDeque<SubtractStrings.Item> storeAll(
+            FixedSizeArrayDeque<SubtractStrings.Item> queue
+    ) {
+
+        final FixedSizeArrayDeque<SubtractStrings.Item> stored =
+                new FixedSizeArrayDeque<>(queue.getMaxSize(), queue.getMaxSizeInBytes());
+
+        for (SubtractStrings.Item item : queue) {
+            stored.addLast(mTextBuffer.store(item));
+        }
+
+        return stored;
+
+    }
+
+    /**
+     *
+     * @return Current history, from the oldest entry in the undo queue to the last entry in the
+     * redo queue.
+     */
+    private List<SubtractStrings.Item> getHistory() {
+        return HistoryTree.historyOf(mUndoQueue, mRedoQueue);
+    }
+
+    private void notifyHistoryChanged() {
+
+        mTree.onHistoryChanged(mUndoQueue, mRedoQueue, isEntryEvicted());
+
+        reportEvictions();
+
+        mMetrics.onQueuesChanged(
+                mUndoQueue.size(),
+                mUndoQueue.getSizeInBytes(),
+                mRedoQueue.size(),
+                mRedoQueue.getSizeInBytes()
+        );
+
+        if (mPool != null) mPool.onHistoryChanged(this);
+
+    }
+
+    private void reportCommit(PendingDiff pending, SubtractStrings.Item item) {
+        if (mAdaptiveTimer != null) mAdaptiveTimer.onCommit(pending.getDiffNanos());
+        mMetrics.onCommit(
+                System.nanoTime() - pending.getChangeNanos(),
+                pending.getDiffNanos(),
+                item.getSizeInBytes()
+        );
+    }
+
+    /**
+     *
+     * @return True if entries have been removed from the queues or branches of history to make
+     * room for new ones since they were last reported.
+     */
+    private boolean isEntryEvicted() {
+        return mUndoQueue.getEvictionCount() + mRedoQueue.getEvictionCount()
+                + mTree.getEvictionCount() > 0;
+    }
+
+    /**
+     * Reports entries removed from the queues and branches of history to make room for new ones
+     * since this was last called.
+     */
+    private void reportEvictions() {
+
+        final int count = mUndoQueue.getEvictionCount() + mRedoQueue.getEvictionCount()
+                + mTree.getEvictionCount();
+
+        if (count == 0) return;
+
+        mMetrics.onEvict(count, mUndoQueue.getEvictedSizeInBytes()
+                + mRedoQueue.getEvictedSizeInBytes() + mTree.getEvictedSizeInBytes());
+
+        mUndoQueue.clearEvictions();
+        mRedoQueue.clearEvictions();
+        mTree.clearEvictions();
+
+    }
+
+    /**
+     * Checks whether the text between {@link #commitStart} and newEnd is the same as the text
+     * between {@link #commitStart} and {@link #commitOldEnd} at the last commit. Chars are only
+     * compared if the changes since then left the range the same length, so that text typed and
+     * then deleted, for example, is found from the bounds of the range alone.
+     *
+     * @param newEnd End of the range in the tracked text
+     */
+    private boolean isTextUnchanged(int newEnd) {
+
+        final int length = commitOldEnd - commitStart;
+
+        if (newEnd - commitStart != length) return false;
+
+        if (length == 0) return true;
+
+        if (trackingMode == TRACKING_MODE_RANGE) return mDirtyRange.isOldTextEqualTo(mText);
+
+        return SubtractStringUtils.regionMatches(mShadow, commitStart, mText, commitStart, length);
+
+    }
+
+    /**
+     *
+     * @return True if item alters text, and so should be added to the undo queue. Only commits
+     * whose old and new text are equal are left out, as the baseline text has already moved past
+     * every commit.
+     */
+    private static boolean isChange(SubtractStrings.Item item) {
+        return item.getDeviationType() != SubtractStrings.UNCHANGED;
+    }
+
+    private boolean isCommitPending() {
+        return !mPendingCommits.isEmpty();
+    }
+
+    /**
+     * Adds all text entered so far to the undo queue, without waiting for the countdown or for
+     * comparisons in progress on the background thread.
+     */
+    private void commitPendingTextNow() {
+
+        if (isRunning) runCountdownRunnableImmediately();
+
+        completePendingCommits();
+
+    }
+
+    /**
+     * Adds commits still being compared on the background thread to the undo queue, comparing
+     * them on this thread if they are not yet complete.
+     */
+    private void completePendingCommits() {
+
+        while (isCommitPending()) {
+
+            final PendingDiff pending = mPendingCommits.pollFirst();
+            final SubtractStrings.Item item = pending.getItem();
+
+            if (isChange(item)) {
+                addToUndoQueue(item);
+                reportCommit(pending, item);
+            }
+
+        }
+
+    }
+
+    private void runCountdownRunnableImmediately() {
+        stopCountdownRunnable();
+        mRunnable.run();
+    }
+
+    private void startCountdownRunnable() {
+        isRunning = true;
+        mScheduler.postDelayed(mRunnable, getTimerLength());
+    }
+
+    private void stopCountdownRunnable() {
+        mScheduler.removeCallbacks(mRunnable);
+        isRunning = false;
+    }
+
+    private void restartCountdownRunnable() {
+        stopCountdownRunnable();
+        startCountdownRunnable();
+    }
+
+    /**
+     *
+     * @return Length of the next countdown, in milliseconds.
+     */
+    private long getTimerLength() {
+        return (mAdaptiveTimer == null) ? countdownTimerLength : mAdaptiveTimer.getLength();
+    }
+
+    /**
+     * Queues and uncommitted text captured by {@link #saveState()}.
+     */
+    static final class State {
+
+        final FixedSizeArrayDeque<SubtractStrings.Item> undoQueue, redoQueue;
+        final String oldText;
+        final boolean isCommitOutstanding;
+
+        /**
+         *
+         * @param undoQueue Undo queue, or null to keep the current queue
+         * @param redoQueue Redo queue, or null to keep the current queue
+         * @param oldText Text against which uncommitted changes are compared, or null
+         * @param isCommitOutstanding True if changes were made after oldText that have not been
+         *                            committed
+         */
+        State(
+                FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+                FixedSizeArrayDeque<SubtractStrings.Item> redoQueue,
+                String oldText,
+                boolean isCommitOutstanding
+        ) {
+            this.undoQueue = undoQueue;
+            this.redoQueue = redoQueue;
+            this.oldText = oldText;
+            this.isCommitOutstanding = isCommitOutstanding;
+        }
+
+    }
+
+    /**
+     * {@link #undo(int)}, {@link #redo(int)}, {@link #revertTo(int)} or
+     * {@link #switchToBranch(HistoryBranch)} call awaiting pending commits.
+     */
+    private static final class DeferredCall {
+
+        private final int type, argument;
+        private final HistoryTree.Branch mBranch;
+
+        DeferredCall(int type, int argument) {
+            this(type, argument, null);
+        }
+
+        DeferredCall(int type, int argument, HistoryTree.Branch branch) {
+            this.type = type;
+            this.argument = argument;
+            mBranch = branch;
+        }
+
+    }
+
+}
@@ -0,0 +1,605 @@
+package com.werdpressed.partisan.rundo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record of every change made to the undo and redo queues, kept in a file so that
+ * history survives the app process being killed or crashing.
+ *
+ * Each change is queued on the calling thread, and written by a shared background thread in
+ * batches, with a single {@code fsync} per batch. The file begins with a snapshot of both queues,
+ * followed by a record per change, so the queues are rebuilt by reading the file from start to
+ * end with {@link #replay(File, FixedSizeArrayDeque, FixedSizeArrayDeque, TextBuffer)}. Each
+ * record carries a checksum, and replay stops at the first record that is incomplete or corrupt.
+ *
+ * Once {@link #COMPACTION_INTERVAL} records have been written, {@link #isCompactionDue()} returns
+ * true, and the file can be replaced with a fresh snapshot through
+ * {@link #compact(Iterable, Iterable)}. Public methods must be called from a single thread.
+ *
+ * @author Tom Calver
+ */
+final class HistoryJournal {
+
+    /**
+     * Returned by {@link #replay(File, FixedSizeArrayDeque, FixedSizeArrayDeque, TextBuffer)} if
+     * the journal file is missing or unreadable.
+     */
+    static final int NO_TEXT_LENGTH = -1;
+
+    /**
+     * Number of records written after a snapshot before compaction is due.
+     */
+    static final int COMPACTION_INTERVAL = 256;
+
+    /**
+     * Time records wait to be written, so that records made close together share an fsync.
+     */
+    private static final long SYNC_DELAY_MILLIS = 500;
+
+    private static final int RECORD_START = 1;
+    private static final int RECORD_UNDO_ITEM = RECORD_START + 1;
+    private static final int RECORD_REDO_ITEM = RECORD_START + 2;
+    private static final int RECORD_COMMIT = RECORD_START + 3;
+    private static final int RECORD_UNDO = RECORD_START + 4;
+    private static final int RECORD_REDO = RECORD_START + 5;
+    private static final int RECORD_CLEAR_REDO = RECORD_START + 6;
+    private static final int RECORD_CLEAR = RECORD_START + 7;
+    private static final int RECORD_MERGE = RECORD_START + 8;
+
+    private static final ScheduledExecutorService WRITE_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "RunDo-journal");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final File mFile;
+
+    private final ConcurrentLinkedQueue<Runnable> mPendingWrites;
+    private final AtomicBoolean isFlushScheduled;
+    private final Runnable mFlushRunnable;
+
+    //Accessed only from WRITE_EXECUTOR
+    private FileOutputStream mFileOutput;
+    private OutputStream mOutput;
+    private final ByteArrayOutputStream mRecordBuffer;
+    private final CRC32 mChecksum;
+
+    private int textLength;
+    private int recordsSinceCompaction;
+
+    HistoryJournal(File file) {
+        mFile = file;
+
+        mPendingWrites = new ConcurrentLinkedQueue<>();
+        isFlushScheduled = new AtomicBoolean();
+        mFlushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                flushPendingWrites();
+            }
+        };
+
+        mRecordBuffer = new ByteArrayOutputStream();
+        mChecksum = new CRC32();
+    }
+
+    /**
+     * Rebuilds the undo and redo queues recorded in a journal file. Should be called before a
+     * {@link HistoryJournal} for the same file is started with
+     * {@link #compact(Iterable, Iterable)}.
+     *
+     * The file is read on the background thread, once every write queued before this call has
+     * finished, so that a journal closed with {@link #close()} just before, for example by an
+     * Activity that is being recreated, is read in full.
+     *
+     * @param file Journal file
+     * @param undoQueue Empty queue, to which recorded undo items are added
+     * @param redoQueue Empty queue, to which recorded redo items are added
+     * @param buffer Buffer in which to store the text of recorded items
+     * @return Length of the text to which the rebuilt queues apply, or {@link #NO_TEXT_LENGTH}
+     */
+    static int replay(
+            File file,
+            FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+            FixedSizeArrayDeque<SubtractStrings.Item> redoQueue,
+            TextBuffer buffer
+    ) {
+
+        final ByteBuffer in;
+
+        try {
+            in = ByteBuffer.wrap(readFileAfterWrites(file));
+        } catch (IOException e) {
+            return NO_TEXT_LENGTH;
+        }
+
+        final CRC32 checksum = new CRC32();
+        int textLength = NO_TEXT_LENGTH;
+
+        try {
+
+            while (in.hasRemaining()) {
+
+                final int recordStart = in.position();
+                final int type = in.get();
+                final int payloadLength = ItemCodec.readVarInt(in);
+                final int payloadStart = in.position();
+
+                if (payloadLength < 0 || payloadLength + 4 > in.remaining()) break;
+
+                checksum.reset();
+                checksum.update(in.array(), recordStart, payloadStart - recordStart + payloadLength);
+                in.position(payloadStart + payloadLength);
+                if (in.getInt() != (int) checksum.getValue()) break;
+
+                in.position(payloadStart);
+
+                final ByteBuffer payload = in.slice();
+                payload.limit(payloadLength);
+
+                if (type == RECORD_START) {
+                    textLength = ItemCodec.readVarInt(payload);
+                    undoQueue.clear();
+                    redoQueue.clear();
+                } else if (textLength != NO_TEXT_LENGTH) {
+                    textLength = applyRecord(
+                            type, payload, textLength, undoQueue, redoQueue, buffer
+                    );
+                }
+
+                in.position(payloadStart + payloadLength + 4);
+
+            }
+
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            //Final record was not completely written before the process ended
+        }
+
+        return textLength;
+
+    }
+
+    /**
+     * Records an Item added to the front of the undo queue after text was altered.
+     */
+    void commit(SubtractStrings.Item item) {
+        textLength += getLengthChange(item);
+        enqueueRecord(RECORD_COMMIT, item);
+    }
+
+    /**
+     * Records an Item moved from the front of the undo queue to the front of the redo queue.
+     */
+    void undo(SubtractStrings.Item item) {
+        textLength -= getLengthChange(item);
+        enqueueRecord(RECORD_UNDO, null);
+    }
+
+    /**
+     * Records an Item moved from the front of the redo queue to the front of the undo queue.
+     */
+    void redo(SubtractStrings.Item item) {
+        textLength += getLengthChange(item);
+        enqueueRecord(RECORD_REDO, null);
+    }
+
+    /**
+     * Records an Item merged into the Item at the front of the undo queue with
+     * {@link EditCoalescer#merge(SubtractStrings.Item, SubtractStrings.Item, TextBuffer)}. Only the
+     * merged Item is written, rather than the whole run.
+     */
+    void merge(SubtractStrings.Item item) {
+        textLength += getLengthChange(item);
+        enqueueRecord(RECORD_MERGE, item);
+    }
+
+    void clearRedoQueue() {
+        enqueueRecord(RECORD_CLEAR_REDO, null);
+    }
+
+    void clearAllQueues() {
+        enqueueRecord(RECORD_CLEAR, null);
+    }
+
+    /**
+     * Replaces the journal file with a snapshot of the queues. Must be called once before any
+     * other records are made.
+     *
+     * @param textLength Length of the text to which the queues apply
+     * @param undoQueue Undo queue, from most to least recent
+     * @param redoQueue Redo queue, from most to least recent
+     */
+    void start(
+            int textLength,
+            Iterable<SubtractStrings.Item> undoQueue,
+            Iterable<SubtractStrings.Item> redoQueue
+    ) {
+        this.textLength = textLength;
+        compact(undoQueue, redoQueue);
+    }
+
+    /**
+     *
+     * @return True if enough records have been written since the last snapshot that a new one
+     * would make the journal file notably shorter.
+     */
+    boolean isCompactionDue() {
+        return recordsSinceCompaction >= COMPACTION_INTERVAL;
+    }
+
+    /**
+     * Replaces the journal file with a snapshot of the queues, in the background.
+     *
+     * @param undoQueue Undo queue, from most to least recent
+     * @param redoQueue Redo queue, from most to least recent
+     */
+    void compact(Iterable<SubtractStrings.Item> undoQueue, Iterable<SubtractStrings.Item> redoQueue) {
+
+        //Items are immutable, so only the order of the queues at this point needs to be copied
+        final List<SubtractStrings.Item> undoItems = copyOf(undoQueue);
+        final List<SubtractStrings.Item> redoItems = copyOf(redoQueue);
+        final int snapshotTextLength = textLength;
+
+        recordsSinceCompaction = 0;
+
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                writeSnapshot(snapshotTextLength, undoItems, redoItems);
+            }
+        });
+
+    }
+
+    /**
+     * Writes all queued records now, rather than after the usual delay.
+     */
+    void flush() {
+        WRITE_EXECUTOR.execute(mFlushRunnable);
+    }
+
+    /**
+     * Writes all queued records, then closes the journal file, in the background. No further
+     * records should be made. A call to
+     * {@link #replay(File, FixedSizeArrayDeque, FixedSizeArrayDeque, TextBuffer)} made after
+     * this returns reads the file once it is closed.
+     */
+    void close() {
+        WRITE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushPendingWrites();
+                closeOutput();
+            }
+        });
+    }
+
+    private void enqueueRecord(final int type, final SubtractStrings.Item item) {
+
+        recordsSinceCompaction++;
+
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (mOutput == null) return;
+                try {
+                    writeRecord(mOutput, type, item);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    closeOutput();
+                }
+            }
+        });
+
+    }
+
+    private void enqueue(Runnable write) {
+        mPendingWrites.add(write);
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            WRITE_EXECUTOR.schedule(mFlushRunnable, SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushPendingWrites() {
+
+        isFlushScheduled.set(false);
+
+        Runnable write;
+        boolean isWritten = false;
+
+        while ((write = mPendingWrites.poll()) != null) {
+            write.run();
+            isWritten = true;
+        }
+
+        if (!isWritten || mOutput == null) return;
+
+        try {
+            mOutput.flush();
+            mFileOutput.getFD().sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeOutput();
+        }
+
+    }
+
+    private void writeSnapshot(
+            int textLength,
+            List<SubtractStrings.Item> undoItems,
+            List<SubtractStrings.Item> redoItems
+    ) {
+
+        closeOutput();
+
+        final File tempFile = new File(mFile.getPath() + ".tmp");
+        FileOutputStream fileOutput = null;
+
+        try {
+
+            fileOutput = new FileOutputStream(tempFile);
+            final OutputStream out = new BufferedOutputStream(fileOutput);
+
+            writeRecord(out, RECORD_START, textLength);
+
+            //Oldest first, so that each Item can be added to the front of its queue on replay
+            for (int i = undoItems.size() - 1; i >= 0; i--) {
+                writeRecord(out, RECORD_UNDO_ITEM, undoItems.get(i));
+            }
+            for (int i = redoItems.size() - 1; i >= 0; i--) {
+                writeRecord(out, RECORD_REDO_ITEM, redoItems.get(i));
+            }
+
+            out.flush();
+            fileOutput.getFD().sync();
+            fileOutput.close();
+            fileOutput = null;
+
+            if (!tempFile.renameTo(mFile)) throw new IOException("Unable to replace " + mFile);
+
+            mFileOutput = new FileOutputStream(mFile, true);
+            mOutput = new BufferedOutputStream(mFileOutput);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (fileOutput != null) {
+                try {
+                    fileOutput.close();
+                } catch (IOException ignored) {
+                    //Already failed
+                }
+            }
+        }
+
+    }
+
+    private void writeRecord(OutputStream out, int type, SubtractStrings.Item item)
+            throws IOException {
+
+        mRecordBuffer.reset();
+
+        //Payload is the length of the offsets, the offsets, then all chars to the end
+        if (item != null) {
+
+            final ByteArrayOutputStream offsets = new ByteArrayOutputStream();
+            final StringBuilder text = new StringBuilder();
+
+            ItemCodec.writeItem(offsets, text, item);
+
+            ItemCodec.writeVarInt(mRecordBuffer, offsets.size());
+            offsets.writeTo(mRecordBuffer);
+            writeChars(mRecordBuffer, text);
+
+        }
+
+        writeFramedRecord(out, type);
+
+    }
+
+    private void writeRecord(OutputStream out, int type, int value) throws IOException {
+        mRecordBuffer.reset();
+        ItemCodec.writeVarInt(mRecordBuffer, value);
+        writeFramedRecord(out, type);
+    }
+
+    /**
+     * Writes type, payload length, the payload held in {@link #mRecordBuffer}, and a checksum of
+     * all three.
+     */
+    private void writeFramedRecord(OutputStream out, int type) throws IOException {
+
+        final byte[] payload = mRecordBuffer.toByteArray();
+
+        mRecordBuffer.reset();
+        mRecordBuffer.write(type);
+        ItemCodec.writeVarInt(mRecordBuffer, payload.length);
+        mRecordBuffer.write(payload, 0, payload.length);
+
+        mChecksum.reset();
+        mChecksum.update(mRecordBuffer.toByteArray());
+
+        final int checksum = (int) mChecksum.getValue();
+        mRecordBuffer.write(checksum >>> 24);
+        mRecordBuffer.write(checksum >>> 16);
+        mRecordBuffer.write(checksum >>> 8);
+        mRecordBuffer.write(checksum);
+
+        mRecordBuffer.writeTo(out);
+
+    }
+
+    private void closeOutput() {
+
+        if (mOutput == null) return;
+
+        try {
+            mOutput.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            mFileOutput = null;
+            mOutput = null;
+        }
+
+    }
+
+    private static int applyRecord(
+            int type,
+            ByteBuffer in,
+            int textLength,
+            FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+            FixedSizeArrayDeque<SubtractStrings.Item> redoQueue,
+            TextBuffer buffer
+    ) {
+
+        SubtractStrings.Item item;
+
+        switch (type) {
+            case RECORD_UNDO_ITEM:
+                undoQueue.addFirst(buffer.store(readItem(in)));
+                break;
+            case RECORD_REDO_ITEM:
+                redoQueue.addFirst(buffer.store(readItem(in)));
+                break;
+            case RECORD_COMMIT:
+                item = buffer.store(readItem(in));
+                undoQueue.addFirst(item);
+                textLength += getLengthChange(item);
+                break;
+            case RECORD_MERGE:
+                item = buffer.store(readItem(in));
+                final SubtractStrings.Item head = undoQueue.pollFirst();
+                undoQueue.addFirst(
+                        (head == null) ? item : EditCoalescer.merge(head, item, buffer)
+                );
+                textLength += getLengthChange(item);
+                break;
+            case RECORD_UNDO:
+                item = undoQueue.poll();
+                if (item != null) {
+                    redoQueue.addFirst(item);
+                    textLength -= getLengthChange(item);
+                }
+                break;
+            case RECORD_REDO:
+                item = redoQueue.poll();
+                if (item != null) {
+                    undoQueue.addFirst(item);
+                    textLength += getLengthChange(item);
+                }
+                break;
+            case RECORD_CLEAR_REDO:
+                redoQueue.clear();
+                break;
+            case RECORD_CLEAR:
+                undoQueue.clear();
+                redoQueue.clear();
+                break;
+            default:
+                break;
+        }
+
+        return textLength;
+
+    }
+
+    private static SubtractStrings.Item readItem(ByteBuffer payload) {
+
+        final int offsetsLength = ItemCodec.readVarInt(payload);
+
+        final ByteBuffer offsets = payload.slice();
+        offsets.limit(offsetsLength);
+        payload.position(payload.position() + offsetsLength);
+
+        return ItemCodec.readItem(offsets, payload.slice().asCharBuffer());
+
+    }
+
+    /**
+     *
+     * @return Difference in text length after item is redone.
+     */
+    private static int getLengthChange(SubtractStrings.Item item) {
+        return item.getLastDeviationNewText() - item.getLastDeviationOldText();
+    }
+
+    private static void writeChars(ByteArrayOutputStream out, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            out.write(c >>> 8);
+            out.write(c);
+        }
+    }
+
+    private static List<SubtractStrings.Item> copyOf(Iterable<SubtractStrings.Item> queue) {
+        final List<SubtractStrings.Item> items = new ArrayList<>();
+        for (SubtractStrings.Item item : queue) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Reads file on {@link #WRITE_EXECUTOR}, after any writes already queued there, and waits for
+     * the result.
+     */
+    private static byte[] readFileAfterWrites(final File file) throws IOException {
+
+        final Future<byte[]> read = WRITE_EXECUTOR.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return readFile(file);
+            }
+        });
+
+        try {
+            return read.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+
+        try {
+            final byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+
+    }
+
+}
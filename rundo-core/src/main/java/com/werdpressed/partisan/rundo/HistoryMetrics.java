@@ -0,0 +1,90 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Receives timings and sizes from a {@link History}, to find where commits or undo and redo calls
+ * are slow, or where history uses too much memory. Set with
+ * {@link History#setHistoryMetrics(HistoryMetrics)}. {@link HistogramMetrics} collects each value
+ * into a histogram.
+ *
+ * All methods are called on the thread the {@link History} is used from, and take only primitive
+ * values, so that reporting allocates nothing. Implementations should return quickly.
+ *
+ * @author Tom Calver
+ */
+public interface HistoryMetrics {
+
+    /**
+     * Ignores all values. Used until another implementation is set.
+     */
+    HistoryMetrics NONE = new HistoryMetrics() {
+
+        @Override
+        public void onCommit(long latencyNanos, long diffNanos, long itemSizeInBytes) {
+            //Ignored
+        }
+
+        @Override
+        public void onQueuesChanged(
+                int undoEntries,
+                long undoBytes,
+                int redoEntries,
+                long redoBytes
+        ) {
+            //Ignored
+        }
+
+        @Override
+        public void onApply(int steps, long applyNanos) {
+            //Ignored
+        }
+
+        @Override
+        public void onEvict(int entries, long bytes) {
+            //Ignored
+        }
+
+    };
+
+    /**
+     * Called as each commit is added to the undo queue.
+     *
+     * @param latencyNanos Time from the last change to the text included in the commit until it
+     *                     was added to the undo queue, which includes the countdown set with
+     *                     {@link History#setTimerLength(long)}, and time spent waiting for the
+     *                     background thread. Zero with {@link History#TRACKING_MODE_COALESCE}.
+     * @param diffNanos Time spent comparing old and new text, including any time spent storing
+     *                  the whole of both texts after the {@link DiffStrategy} gave up
+     * @param itemSizeInBytes Approximate memory used by the commit, in bytes
+     */
+    void onCommit(long latencyNanos, long diffNanos, long itemSizeInBytes);
+
+    /**
+     * Called whenever entries are added to or removed from the undo and redo queues.
+     *
+     * @param undoEntries Number of entries in the undo queue
+     * @param undoBytes Approximate memory used by entries in the undo queue, in bytes
+     * @param redoEntries Number of entries in the redo queue
+     * @param redoBytes Approximate memory used by entries in the redo queue, in bytes
+     */
+    void onQueuesChanged(int undoEntries, long undoBytes, int redoEntries, long redoBytes);
+
+    /**
+     * Called once tracked text has been changed by {@link History#undo()}, {@link History#redo()}
+     * or any of the calls that step through several entries at once.
+     *
+     * @param steps Number of entries stepped through
+     * @param applyNanos Time spent changing tracked text, which includes time spent in its
+     *                   listeners
+     */
+    void onApply(int steps, long applyNanos);
+
+    /**
+     * Called when entries are removed from history to make room for new ones, either as a queue
+     * is full, or to keep within a memory budget.
+     *
+     * @param entries Number of entries removed
+     * @param bytes Approximate memory freed, in bytes
+     */
+    void onEvict(int entries, long bytes);
+
+}
@@ -0,0 +1,195 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Tracks several texts, such as the fields of a form, with one {@link HistoryEngine} per text.
+ * All engines share a single {@link Scheduler}, and a single memory budget across all of their
+ * queues. When the budget is exceeded, the oldest entries are removed from the engine whose
+ * history changed least recently, and only once that engine's queues are empty from the next
+ * coldest. The most recent entry of the engine that exceeded the budget is always kept.
+ *
+ * Engines added to a pool have no limit on the number of entries in their queues, though one may
+ * still be set on individual engines with {@link HistoryEngine#setQueueSize(int)} or
+ * {@link HistoryEngine#setHistoryMemoryBudget(long)}.
+ *
+ * @param <K> Type of key identifying each text
+ *
+ * @author Tom Calver
+ */
+public final class HistoryPool<K> {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 1024 * 1024;
+
+    private final Scheduler mScheduler;
+    private final Executor mDiffExecutor;
+
+    private final Map<K, HistoryEngine> mEngines;
+
+    /**
+     * Engines in the order their history last changed, coldest first.
+     */
+    private final LinkedHashMap<HistoryEngine, K> mUsage;
+
+    private long memoryBudget;
+
+    /**
+     * Compares text on a single background thread shared by all instances.
+     *
+     * @param scheduler Shared by all engines in the pool
+     */
+    public HistoryPool(Scheduler scheduler) {
+        this(scheduler, WriteToArrayDequeRunnable.DIFF_EXECUTOR);
+    }
+
+    /**
+     *
+     * @param scheduler Shared by all engines in the pool, through a {@link DeadlineScheduler} so
+     *                  that their countdowns share a single pending task
+     * @param diffExecutor Shared by all engines in the pool
+     * @see {@link HistoryEngine#HistoryEngine(TextTarget, Scheduler, Executor)}
+     */
+    public HistoryPool(Scheduler scheduler, Executor diffExecutor) {
+        mScheduler = (scheduler instanceof DeadlineScheduler)
+                ? scheduler
+                : new DeadlineScheduler(scheduler);
+        mDiffExecutor = diffExecutor;
+        mEngines = new HashMap<>();
+        mUsage = new LinkedHashMap<>();
+        memoryBudget = DEFAULT_MEMORY_BUDGET;
+    }
+
+    /**
+     * Creates an engine for text, which counts towards the memory budget of this pool.
+     *
+     * @param key Identifies text within this pool
+     * @param text Text to track
+     * @return The new engine, which is also returned by {@link #get(Object)}.
+     * @throws IllegalArgumentException If an engine was already added for key
+     */
+    public HistoryEngine add(K key, TextTarget text) {
+
+        if (mEngines.containsKey(key)) {
+            throw new IllegalArgumentException("History already tracked for key " + key);
+        }
+
+        final HistoryEngine engine = new HistoryEngine(text, mScheduler, mDiffExecutor);
+        engine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        engine.setPool(this);
+
+        mEngines.put(key, engine);
+        mUsage.put(engine, key);
+
+        return engine;
+
+    }
+
+    /**
+     *
+     * @param key Key passed to {@link #add(Object, TextTarget)}
+     * @return Engine for key, or null if there is none.
+     */
+    public HistoryEngine get(K key) {
+        return mEngines.get(key);
+    }
+
+    /**
+     * Stops an engine counting towards the memory budget of this pool. The engine is not closed.
+     *
+     * @param key Key passed to {@link #add(Object, TextTarget)}
+     * @return The removed engine, or null if there was none.
+     */
+    public HistoryEngine remove(K key) {
+
+        final HistoryEngine engine = mEngines.remove(key);
+
+        if (engine != null) {
+            mUsage.remove(engine);
+            engine.setPool(null);
+        }
+
+        return engine;
+
+    }
+
+    /**
+     *
+     * @return Unmodifiable view of all engines in this pool, by key.
+     */
+    public Map<K, HistoryEngine> getEngines() {
+        return Collections.unmodifiableMap(mEngines);
+    }
+
+    /**
+     * Sets the memory available to the queues of all engines together. Default value is
+     * {@value #DEFAULT_MEMORY_BUDGET}. Entries are removed immediately if the budget is already
+     * exceeded.
+     *
+     * @param bytes Approximate memory available to all queues, in bytes
+     */
+    public void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        trim(null);
+    }
+
+    /**
+     *
+     * @return Memory used by the queues of all engines, in bytes.
+     */
+    public long getSizeInBytes() {
+
+        long sizeInBytes = 0;
+
+        for (HistoryEngine engine : mEngines.values()) {
+            sizeInBytes += engine.getSizeInBytes();
+        }
+
+        return sizeInBytes;
+
+    }
+
+    /**
+     * Called by an engine in this pool after entries are added to, or moved between, its queues.
+     */
+    void onHistoryChanged(HistoryEngine engine) {
+
+        final K key = mUsage.remove(engine);
+
+        if (key == null) return;
+
+        mUsage.put(engine, key);
+
+        trim(engine);
+
+    }
+
+    /**
+     * Removes entries, coldest engine first, until all queues fit within the memory budget.
+     *
+     * @param hot Engine whose most recent entry is kept, or null
+     */
+    private void trim(HistoryEngine hot) {
+
+        long sizeInBytes = getSizeInBytes();
+
+        if (sizeInBytes <= memoryBudget) return;
+
+        for (HistoryEngine engine : mUsage.keySet()) {
+
+            final int minEntryCount = (engine == hot) ? 1 : 0;
+
+            while (sizeInBytes > memoryBudget && engine.getEntryCount() > minEntryCount) {
+                sizeInBytes -= engine.evictOldest();
+            }
+
+            if (sizeInBytes <= memoryBudget) return;
+
+        }
+
+    }
+
+}
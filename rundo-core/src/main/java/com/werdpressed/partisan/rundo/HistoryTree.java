@@ -0,0 +1,541 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps branches of history abandoned when text is changed after {@link History#undo()}, which
+ * would otherwise be lost as the redo queue is cleared, so that they can be returned to.
+ *
+ * The current history is the path formed by the undo queue, from its oldest entry, followed by
+ * the redo queue. Each {@link Branch} holds only the entries that follow the point at which it
+ * left that path, or left another branch, and refers to the entry before that point, so that
+ * common history is shared rather than copied. Branches are held in a
+ * {@link FixedSizeArrayDeque} with the same limits as the undo and redo queues, and the branch
+ * abandoned longest ago is removed first.
+ *
+ * @author Tom Calver
+ */
+final class HistoryTree {
+
+    private FixedSizeArrayDeque<Branch> mBranches;
+
+    /**
+     * First entry of the current history when branches from its start were last checked, or null
+     * if it has not been checked since history last branched from its start.
+     */
+    private SubtractStrings.Item mFirstItem;
+
+    /**
+     * Branches discarded by {@link #onHistoryChanged(FixedSizeArrayDeque, FixedSizeArrayDeque,
+     * boolean)} since {@link #clearEvictions()} was last called.
+     */
+    private int prunedCount;
+    private long prunedSizeInBytes;
+
+    /**
+     *
+     * @param maxSize Max number of branches
+     * @param maxSizeInBytes Max memory used by all branches, in bytes
+     */
+    HistoryTree(int maxSize, long maxSizeInBytes) {
+        mBranches = new FixedSizeArrayDeque<>(maxSize, maxSizeInBytes);
+    }
+
+    /**
+     * Keeps the entries of the redo queue as a branch, before it is cleared.
+     *
+     * @param undoQueue Current undo queue
+     * @param redoQueue Redo queue about to be cleared
+     */
+    void branch(
+            FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+            FixedSizeArrayDeque<SubtractStrings.Item> redoQueue
+    ) {
+
+        if (redoQueue.isEmpty()) return;
+
+        final SubtractStrings.Item base = undoQueue.peekFirst();
+
+        //The first entry of the new history is not known until it is committed
+        if (base == null) mFirstItem = null;
+
+        mBranches.addFirst(new Branch(
+                base, redoQueue.toArray(new SubtractStrings.Item[redoQueue.size()])
+        ));
+
+    }
+
+    /**
+     * Discards branches that can no longer be reached, as entries have been removed to make room
+     * for new ones. Branches that left history at its start are discarded if the first entry of
+     * history has changed, and those that left it or another branch after an entry that has since
+     * been removed are discarded if isEntryRemoved is true. Must be called whenever the queues
+     * change.
+     *
+     * @param undoQueue Current undo queue
+     * @param redoQueue Current redo queue
+     * @param isEntryRemoved True if entries have been removed from the queues or from branches
+     *                       since this was last called, other than by {@link #branch(
+     *                       FixedSizeArrayDeque, FixedSizeArrayDeque)}
+     * @return Memory freed, in bytes.
+     */
+    long onHistoryChanged(
+            FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+            FixedSizeArrayDeque<SubtractStrings.Item> redoQueue,
+            boolean isEntryRemoved
+    ) {
+
+        final SubtractStrings.Item firstItem =
+                (undoQueue.isEmpty()) ? redoQueue.peekFirst() : undoQueue.peekLast();
+
+        final boolean isStartRemoved = mFirstItem != null && mFirstItem != firstItem;
+
+        mFirstItem = firstItem;
+
+        if (mBranches.isEmpty() || !(isStartRemoved || isEntryRemoved)) return 0;
+
+        final List<Branch> branches = new ArrayList<>(mBranches);
+
+        if (isStartRemoved) {
+            for (int i = branches.size() - 1; i >= 0; i--) {
+                if (branches.get(i).mBase == null) branches.remove(i);
+            }
+        }
+
+        final List<SubtractStrings.Item> history = historyOf(undoQueue, redoQueue);
+        removeUnreachable(branches, history, indicesOf(history));
+
+        final int count = mBranches.size() - branches.size();
+
+        if (count == 0) return 0;
+
+        final long sizeInBytes = mBranches.getSizeInBytes();
+
+        setBranches(branches);
+
+        final long freedSizeInBytes = sizeInBytes - mBranches.getSizeInBytes();
+
+        prunedCount += count;
+        prunedSizeInBytes += freedSizeInBytes;
+
+        return freedSizeInBytes;
+
+    }
+
+    /**
+     *
+     * @param history Current history, from its oldest entry
+     * @return Branches that can be reached from history, most recently abandoned first.
+     */
+    List<HistoryBranch> getBranches(List<SubtractStrings.Item> history) {
+
+        final Map<SubtractStrings.Item, Integer> historyIndices = indicesOf(history);
+        final Map<SubtractStrings.Item, Branch> owners = ownersOf(mBranches);
+
+        final List<HistoryBranch> branches = new ArrayList<>(mBranches.size());
+
+        for (Branch branch : mBranches) {
+
+            final List<SubtractStrings.Item> path =
+                    getPath(branch, history, historyIndices, owners, mBranches.size());
+
+            if (path == null) continue;
+
+            final int forkIndex = getCommonLength(history, path);
+
+            branches.add(new HistoryBranch(branch, forkIndex, path.size() - forkIndex));
+
+        }
+
+        return branches;
+
+    }
+
+    /**
+     *
+     * @param branch Branch to find the path to
+     * @param history Current history, from its oldest entry
+     * @return Whole history of branch, from the oldest entry of the current history, or null if
+     * branch can no longer be reached.
+     */
+    List<SubtractStrings.Item> getPath(Branch branch, List<SubtractStrings.Item> history) {
+
+        if (!mBranches.contains(branch)) return null;
+
+        return getPath(
+                branch, history, indicesOf(history), ownersOf(mBranches), mBranches.size()
+        );
+
+    }
+
+    /**
+     * Makes path the current history, keeping the part of the previous history that is not shared
+     * with it as a branch.
+     *
+     * @param branch Branch that path was found for with {@link #getPath(Branch, List)}
+     * @param history Previous history, from its oldest entry
+     * @param path New history, from its oldest entry
+     */
+    void switchTo(
+            Branch branch,
+            List<SubtractStrings.Item> history,
+            List<SubtractStrings.Item> path
+    ) {
+
+        final int forkIndex = getCommonLength(history, path);
+
+        final List<Branch> branches = new ArrayList<>(mBranches);
+        branches.remove(branch);
+
+        if (forkIndex < history.size()) {
+            final List<SubtractStrings.Item> abandoned = history.subList(forkIndex, history.size());
+            branches.add(0, new Branch(
+                    (forkIndex == 0) ? null : history.get(forkIndex - 1),
+                    abandoned.toArray(new SubtractStrings.Item[abandoned.size()])
+            ));
+        }
+
+        //Entries now in the current history are removed from the branches that shared them
+        final Map<SubtractStrings.Item, Integer> pathIndices = indicesOf(path);
+
+        for (int i = branches.size() - 1; i >= 0; i--) {
+
+            final Branch rebased = rebase(branches.get(i), path, pathIndices);
+
+            if (rebased == null) {
+                branches.remove(i);
+            } else {
+                branches.set(i, rebased);
+            }
+
+        }
+
+        removeUnreachable(branches, path, pathIndices);
+
+        setBranches(branches);
+
+        mFirstItem = (path.isEmpty()) ? null : path.get(0);
+
+    }
+
+    /**
+     * Must be called when the entry at the front of the undo queue is replaced by one that it has
+     * been merged into.
+     */
+    void onItemReplaced(SubtractStrings.Item item, SubtractStrings.Item replacement) {
+        if (mFirstItem == item) mFirstItem = replacement;
+    }
+
+    void clear() {
+        mBranches.clear();
+        mFirstItem = null;
+    }
+
+    /**
+     * Removes all branches, and sets new limits.
+     */
+    void setLimits(int maxSize, long maxSizeInBytes) {
+        mBranches = new FixedSizeArrayDeque<>(maxSize, maxSizeInBytes);
+        mFirstItem = null;
+    }
+
+    /**
+     *
+     * @return Memory used by entries in all branches, in bytes.
+     */
+    long getSizeInBytes() {
+        return mBranches.getSizeInBytes();
+    }
+
+    /**
+     *
+     * @return Number of branches.
+     */
+    int size() {
+        return mBranches.size();
+    }
+
+    /**
+     *
+     * @see {@link FixedSizeArrayDeque#getEvictionCount()}
+     */
+    int getEvictionCount() {
+        return mBranches.getEvictionCount() + prunedCount;
+    }
+
+    /**
+     *
+     * @see {@link FixedSizeArrayDeque#getEvictedSizeInBytes()}
+     */
+    long getEvictedSizeInBytes() {
+        return mBranches.getEvictedSizeInBytes() + prunedSizeInBytes;
+    }
+
+    void clearEvictions() {
+        mBranches.clearEvictions();
+        prunedCount = 0;
+        prunedSizeInBytes = 0;
+    }
+
+    /**
+     * Removes the branch abandoned longest ago.
+     *
+     * @return Memory freed, in bytes, or -1 if there are no branches.
+     */
+    long evictOldest() {
+        final Branch branch = mBranches.pollLast();
+        return (branch == null) ? -1 : branch.getSizeInBytes();
+    }
+
+    /**
+     *
+     * @param branches Branches, most recently abandoned first
+     */
+    private void setBranches(List<Branch> branches) {
+
+        mBranches.clear();
+
+        //Added oldest first, so that any over the limits are removed oldest first
+        for (int i = branches.size() - 1; i >= 0; i--) {
+            mBranches.addFirst(branches.get(i));
+        }
+
+    }
+
+    /**
+     *
+     * @return Current history, from the oldest entry in undoQueue to the last entry in redoQueue.
+     */
+    static List<SubtractStrings.Item> historyOf(
+            FixedSizeArrayDeque<SubtractStrings.Item> undoQueue,
+            FixedSizeArrayDeque<SubtractStrings.Item> redoQueue
+    ) {
+
+        final List<SubtractStrings.Item> history =
+                new ArrayList<>(undoQueue.size() + redoQueue.size());
+
+        final Iterator<SubtractStrings.Item> undoIterator = undoQueue.descendingIterator();
+
+        while (undoIterator.hasNext()) {
+            history.add(undoIterator.next());
+        }
+
+        history.addAll(redoQueue);
+
+        return history;
+
+    }
+
+    /**
+     * Removes branches left after entries that have since been removed, which can't be reached
+     * again.
+     *
+     * @param branches Branches, most recently abandoned first
+     * @param history Current history, from its oldest entry
+     * @param historyIndices Index of each entry in history
+     */
+    private static void removeUnreachable(
+            List<Branch> branches,
+            List<SubtractStrings.Item> history,
+            Map<SubtractStrings.Item, Integer> historyIndices
+    ) {
+
+        final Map<SubtractStrings.Item, Branch> owners = ownersOf(branches);
+
+        final int maxDepth = branches.size();
+
+        for (int i = branches.size() - 1; i >= 0; i--) {
+            if (getPath(branches.get(i), history, historyIndices, owners, maxDepth) == null) {
+                branches.remove(i);
+            }
+        }
+
+    }
+
+    /**
+     *
+     * @return Whole history of branch, from the oldest entry of history, or null if branch can no
+     * longer be reached, as the entry it left history or another branch after has been removed.
+     */
+    private static List<SubtractStrings.Item> getPath(
+            Branch branch,
+            List<SubtractStrings.Item> history,
+            Map<SubtractStrings.Item, Integer> historyIndices,
+            Map<SubtractStrings.Item, Branch> owners,
+            int maxDepth
+    ) {
+
+        final List<SubtractStrings.Item> path;
+
+        if (branch.mBase == null) {
+            path = new ArrayList<>(branch.mItems.length);
+        } else if (historyIndices.containsKey(branch.mBase)) {
+            path = new ArrayList<>(history.subList(0, historyIndices.get(branch.mBase) + 1));
+        } else {
+
+            final Branch owner = owners.get(branch.mBase);
+
+            if (owner == null || maxDepth == 0) return null;
+
+            final List<SubtractStrings.Item> ownerPath =
+                    getPath(owner, history, historyIndices, owners, maxDepth - 1);
+
+            if (ownerPath == null) return null;
+
+            final int ownerStart = ownerPath.size() - owner.mItems.length;
+            path = new ArrayList<>(
+                    ownerPath.subList(0, ownerStart + owner.indexOf(branch.mBase) + 1)
+            );
+
+        }
+
+        path.addAll(Arrays.asList(branch.mItems));
+
+        return path;
+
+    }
+
+    /**
+     *
+     * @return Branch equivalent to branch, without the entries it shares with path, or null if
+     * all of its entries are in path.
+     */
+    private static Branch rebase(
+            Branch branch,
+            List<SubtractStrings.Item> path,
+            Map<SubtractStrings.Item, Integer> pathIndices
+    ) {
+
+        int pathIndex;
+
+        if (branch.mBase == null) {
+            pathIndex = 0;
+        } else if (pathIndices.containsKey(branch.mBase)) {
+            pathIndex = pathIndices.get(branch.mBase) + 1;
+        } else {
+            //Leaves another branch, which is rebased instead
+            return branch;
+        }
+
+        SubtractStrings.Item base = branch.mBase;
+        int start = 0;
+
+        while (start < branch.mItems.length && pathIndex < path.size()
+                && path.get(pathIndex) == branch.mItems[start]) {
+            base = branch.mItems[start];
+            start++;
+            pathIndex++;
+        }
+
+        if (start == branch.mItems.length) return null;
+
+        if (start == 0) return branch;
+
+        return new Branch(base, Arrays.copyOfRange(branch.mItems, start, branch.mItems.length));
+
+    }
+
+    /**
+     *
+     * @return Number of entries at the start of first and second which are the same.
+     */
+    private static int getCommonLength(
+            List<SubtractStrings.Item> first,
+            List<SubtractStrings.Item> second
+    ) {
+
+        final int maxLength = Math.min(first.size(), second.size());
+
+        int length = 0;
+
+        while (length < maxLength && first.get(length) == second.get(length)) {
+            length++;
+        }
+
+        return length;
+
+    }
+
+    private static Map<SubtractStrings.Item, Integer> indicesOf(List<SubtractStrings.Item> items) {
+
+        //Items are compared by identity, as equal changes made at different times are distinct
+        final Map<SubtractStrings.Item, Integer> indices = new IdentityHashMap<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            indices.put(items.get(i), i);
+        }
+
+        return indices;
+
+    }
+
+    private static Map<SubtractStrings.Item, Branch> ownersOf(Iterable<Branch> branches) {
+
+        final Map<SubtractStrings.Item, Branch> owners = new IdentityHashMap<>();
+
+        for (Branch branch : branches) {
+            for (SubtractStrings.Item item : branch.mItems) {
+                owners.put(item, branch);
+            }
+        }
+
+        return owners;
+
+    }
+
+    /**
+     * Entries of history that follow the point at which they left the current history or another
+     * branch.
+     */
+    static final class Branch implements FixedSizeArrayDeque.Measurable {
+
+        /**
+         * Entry after which this branch begins, or null if it begins at the start of history.
+         */
+        private final SubtractStrings.Item mBase;
+
+        /**
+         * Entries of this branch, in the order they are redone.
+         */
+        private final SubtractStrings.Item[] mItems;
+
+        private final long sizeInBytes;
+
+        Branch(SubtractStrings.Item base, SubtractStrings.Item[] items) {
+
+            mBase = base;
+            mItems = items;
+
+            long sizeInBytes = 0;
+
+            for (SubtractStrings.Item item : items) {
+                sizeInBytes += item.getSizeInBytes();
+            }
+
+            this.sizeInBytes = sizeInBytes;
+
+        }
+
+        private int indexOf(SubtractStrings.Item item) {
+
+            for (int i = 0; i < mItems.length; i++) {
+                if (mItems[i] == item) return i;
+            }
+
+            return -1;
+
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects hunks reported by a {@link DiffStrategy}, checks they describe a valid change from old
+ * to new text, and converts them to a {@link SubtractStrings.Item}.
+ *
+ * @author Tom Calver
+ */
+final class HunkCollector implements DiffStrategy.Hunks {
+
+    private final CharSequence mOldText, mNewText;
+    private final int mOffset;
+    private final long deadlineNanos;
+    private final PendingDiff mPendingDiff;
+
+    //Four values per hunk: old start, old end, new start and new end
+    private int[] mHunks;
+    private int hunksLength;
+
+    /**
+     *
+     * @param oldText Text before changes
+     * @param newText Text after changes
+     * @param offset Index at which both texts begin in their larger texts, as in
+     *               {@link SubtractStrings#SubtractStrings(CharSequence, CharSequence, int)}
+     * @param deadlineNanos Value of {@link System#nanoTime()} after which
+     *                      {@link #isOverBudget()} returns true
+     * @param pendingDiff Commit being compared, once cancelled {@link #isOverBudget()} also
+     *                    returns true
+     */
+    HunkCollector(
+            CharSequence oldText,
+            CharSequence newText,
+            int offset,
+            long deadlineNanos,
+            PendingDiff pendingDiff
+    ) {
+
+        mOldText = oldText;
+        mNewText = newText;
+        mOffset = offset;
+        this.deadlineNanos = deadlineNanos;
+        mPendingDiff = pendingDiff;
+
+        mHunks = new int[16];
+
+    }
+
+    @Override
+    public void add(int oldStart, int oldEnd, int newStart, int newEnd) {
+
+        final int previousOldEnd = (hunksLength == 0) ? 0 : mHunks[hunksLength - 3];
+        final int previousNewEnd = (hunksLength == 0) ? 0 : mHunks[hunksLength - 1];
+
+        if (oldStart < previousOldEnd || oldEnd < oldStart || oldEnd > mOldText.length()
+                || newStart < previousNewEnd || newEnd < newStart || newEnd > mNewText.length()) {
+            throw new IllegalArgumentException("Hunk out of range or order");
+        }
+
+        if (oldStart - previousOldEnd != newStart - previousNewEnd) {
+            throw new IllegalArgumentException("Unchanged text differs in length");
+        }
+
+        //Empty hunks change nothing
+        if (oldStart == oldEnd && newStart == newEnd) return;
+
+        if (hunksLength + 4 > mHunks.length) {
+            final int[] hunks = new int[mHunks.length * 2];
+            System.arraycopy(mHunks, 0, hunks, 0, hunksLength);
+            mHunks = hunks;
+        }
+
+        mHunks[hunksLength++] = oldStart;
+        mHunks[hunksLength++] = oldEnd;
+        mHunks[hunksLength++] = newStart;
+        mHunks[hunksLength++] = newEnd;
+
+    }
+
+    @Override
+    public boolean isOverBudget() {
+        return mPendingDiff.isCancelled() || System.nanoTime() - deadlineNanos > 0;
+    }
+
+    /**
+     * Discards all hunks added so far.
+     */
+    void clear() {
+        hunksLength = 0;
+    }
+
+    /**
+     *
+     * @return Item containing each hunk added so far. Of type {@link SubtractStrings#MULTIPLE} if
+     * there was more than one, or {@link SubtractStrings#UNCHANGED} if there were none.
+     * @throws IllegalArgumentException If the text after the last hunk differs in length between
+     * old and new text
+     */
+    SubtractStrings.Item getItem() {
+
+        final int lastOldEnd = (hunksLength == 0) ? 0 : mHunks[hunksLength - 3];
+        final int lastNewEnd = (hunksLength == 0) ? 0 : mHunks[hunksLength - 1];
+
+        if (mOldText.length() - lastOldEnd != mNewText.length() - lastNewEnd) {
+            throw new IllegalArgumentException("Unchanged text differs in length");
+        }
+
+        if (hunksLength == 0) {
+            return new SubtractStrings.Item(
+                    mOffset, mOffset, mOffset, SubtractStrings.UNCHANGED, "", "");
+        }
+
+        final List<SubtractStrings.Item> items = new ArrayList<>(hunksLength / 4);
+
+        for (int i = 0; i < hunksLength; i += 4) {
+            items.add(createItem(mHunks[i], mHunks[i + 1], mHunks[i + 2], mHunks[i + 3]));
+        }
+
+        return (items.size() == 1)
+                ? items.get(0)
+                : new SubtractStrings.Item(items.toArray(new SubtractStrings.Item[items.size()]));
+
+    }
+
+    /**
+     * Hunks are stored at their index in new text. As hunks before this one are applied first on
+     * redo, and undone last, that is also where this hunk is found whenever it is applied.
+     */
+    private SubtractStrings.Item createItem(int oldStart, int oldEnd, int newStart, int newEnd) {
+
+        final int firstDeviation = mOffset + newStart;
+        final int deviationType;
+
+        if (oldStart == oldEnd) {
+            deviationType = SubtractStrings.ADDITION;
+        } else if (newStart == newEnd) {
+            deviationType = SubtractStrings.DELETION;
+        } else {
+            deviationType = SubtractStrings.REPLACEMENT;
+        }
+
+        return new SubtractStrings.Item(
+                firstDeviation,
+                firstDeviation + (oldEnd - oldStart),
+                firstDeviation + (newEnd - newStart),
+                deviationType,
+                SubtractStringUtils.substring(mOldText, oldStart, oldEnd),
+                SubtractStringUtils.substring(mNewText, newStart, newEnd)
+        );
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.werdpressed.partisan.rundo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.List;
+
+/**
+ * Encodes {@link SubtractStrings.Item} in a compact form. Rather than four {@code int} values and
+ * two {@link String} objects per Item, offsets are packed into a block of variable length
+ * integers, and text is appended to a block of chars shared by any number of Items. Used by
+ * {@link HistoryJournal} for each record, and to save history in platform specific formats.
+ *
+ * @author Tom Calver
+ */
+final class ItemCodec {
+
+    private ItemCodec() { throw new AssertionError(); }
+
+    /**
+     * Writes the offsets of item, and those of its hunks, to offsets, and appends its text and
+     * that of its hunks to text.
+     */
+    static void writeItem(ByteArrayOutputStream offsets, StringBuilder text, SubtractStrings.Item item) {
+
+        final CharSequence replacedText = item.getReplacedText();
+        final CharSequence alteredText = item.getAlteredText();
+        final int firstDeviation = item.getFirstDeviation();
+
+        //Later offsets are relative to the first deviation, which keeps them short.
+        writeVarInt(offsets, firstDeviation);
+        writeVarInt(offsets, item.getLastDeviationOldText() - firstDeviation);
+        writeVarInt(offsets, item.getLastDeviationNewText() - firstDeviation);
+        writeVarInt(offsets, item.getDeviationType() - SubtractStrings.ADDITION);
+        writeVarInt(offsets, replacedText.length());
+        writeVarInt(offsets, alteredText.length());
+
+        text.append(replacedText).append(alteredText);
+
+        if (item.getDeviationType() == SubtractStrings.MULTIPLE) {
+            final List<SubtractStrings.Item> hunks = item.getHunks();
+            writeVarInt(offsets, hunks.size());
+            for (SubtractStrings.Item hunk : hunks) {
+                writeItem(offsets, text, hunk);
+            }
+        }
+
+    }
+
+    /**
+     * Reads an Item written by
+     * {@link #writeItem(ByteArrayOutputStream, StringBuilder, SubtractStrings.Item)}, advancing
+     * both buffers past it.
+     */
+    static SubtractStrings.Item readItem(ByteBuffer offsets, CharBuffer text) {
+
+        final int firstDeviation = readVarInt(offsets);
+        final int lastDeviationOldText = firstDeviation + readVarInt(offsets);
+        final int lastDeviationNewText = firstDeviation + readVarInt(offsets);
+        final int deviationType = SubtractStrings.ADDITION + readVarInt(offsets);
+        final int replacedLength = readVarInt(offsets);
+        final int alteredLength = readVarInt(offsets);
+
+        final String replacedText = readText(text, replacedLength);
+        final String alteredText = readText(text, alteredLength);
+
+        if (deviationType == SubtractStrings.MULTIPLE) {
+            final SubtractStrings.Item[] hunks = new SubtractStrings.Item[readVarInt(offsets)];
+            for (int i = 0; i < hunks.length; i++) {
+                hunks[i] = readItem(offsets, text);
+            }
+            return new SubtractStrings.Item(hunks);
+        }
+
+        return new SubtractStrings.Item(
+                firstDeviation,
+                lastDeviationOldText,
+                lastDeviationNewText,
+                deviationType,
+                replacedText,
+                alteredText
+        );
+
+    }
+
+    /**
+     * Writes value seven bits at a time, least significant first, with the high bit of each byte
+     * set if more follow. Values are treated as unsigned, so small positive values take a single
+     * byte and negative values take five.
+     */
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a value written by {@link #writeVarInt(ByteArrayOutputStream, int)}.
+     *
+     * @throws java.nio.BufferUnderflowException If in ends part way through the value
+     */
+    static int readVarInt(ByteBuffer in) {
+
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+
+    }
+
+    private static String readText(CharBuffer in, int length) {
+        final String text = in.subSequence(0, length).toString();
+        in.position(in.position() + length);
+        return text;
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Finds the changes between two texts with the linear space variant of the O(ND) algorithm
+ * described by Eugene W. Myers in "An O(ND) Difference Algorithm and Its Variations".
+ *
+ * Where {@link SubtractStrings} finds a single region spanning the first and last changed chars,
+ * this reports each separate change as its own hunk, so two edits far apart in one commit are
+ * stored without the unchanged text between them. Unchanged runs shorter than
+ * {@link #MIN_MATCH_LENGTH} are folded into the hunks either side. The search is abandoned if it
+ * exceeds {@link #MAX_WORK} steps or the time budget for the commit.
+ *
+ * @author Tom Calver
+ */
+final class MyersDiff {
+
+    /**
+     * Unchanged runs shorter than this are stored as part of a hunk, as each hunk costs more
+     * memory than a few chars.
+     */
+    static final int MIN_MATCH_LENGTH = 8;
+
+    /**
+     * Max number of diagonals and chars visited before the search is abandoned.
+     */
+    static final long MAX_WORK = 1L << 24;
+
+    /**
+     * Max number of edits searched for in each direction when finding a middle snake, which bounds
+     * the memory used by the search. Each edit costs at least one step, so this is only reached if
+     * {@link #MAX_WORK} would soon be exceeded anyway.
+     */
+    private static final int MAX_EDIT_DISTANCE = 8192;
+
+    private final CharSequence mOldText, mNewText;
+    private final DiffStrategy.Hunks mHunks;
+
+    private int[] mForward, mBackward;
+    private final int[] mSnake;
+    private long work;
+
+    //Unchanged runs, three values per run: old index, new index and length
+    private int[] mMatches;
+    private int matchesLength;
+
+    /**
+     * Neither text is copied, so they must not be modified until {@link #findHunks(int, int, int)}
+     * has returned.
+     *
+     * @param oldText Text before changes
+     * @param newText Text after changes
+     * @param hunks Receives hunks once the search is complete
+     */
+    MyersDiff(CharSequence oldText, CharSequence newText, DiffStrategy.Hunks hunks) {
+
+        mOldText = oldText;
+        mNewText = newText;
+        mHunks = hunks;
+
+        mSnake = new int[4];
+        mMatches = new int[48];
+
+    }
+
+    /**
+     * Searches a region which begins at the same index in old and new text, and reports the hunks
+     * within it. Nothing is reported if the search is abandoned.
+     *
+     * @param start Index at which the region begins in both texts
+     * @param oldEnd Index at which the region ends in old text
+     * @param newEnd Index at which the region ends in new text
+     * @return False if the search was abandoned
+     */
+    boolean findHunks(int start, int oldEnd, int newEnd) {
+
+        if (!diff(start, oldEnd, start, newEnd)) return false;
+
+        int oldIndex = start;
+        int newIndex = start;
+
+        for (int i = 0; i < matchesLength; i += 3) {
+
+            final int matchLength = mMatches[i + 2];
+
+            if (matchLength < MIN_MATCH_LENGTH) continue;
+
+            final int matchOldIndex = mMatches[i];
+            final int matchNewIndex = mMatches[i + 1];
+
+            if (matchOldIndex > oldIndex || matchNewIndex > newIndex) {
+                mHunks.add(oldIndex, matchOldIndex, newIndex, matchNewIndex);
+            }
+
+            oldIndex = matchOldIndex + matchLength;
+            newIndex = matchNewIndex + matchLength;
+
+        }
+
+        if (oldIndex < oldEnd || newIndex < newEnd) {
+            mHunks.add(oldIndex, oldEnd, newIndex, newEnd);
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Finds unchanged runs between two sections of old and new text, in order, by recursively
+     * finding the middle snake of the shortest edit script between them.
+     *
+     * @return False if the search was abandoned
+     */
+    private boolean diff(int oldStart, int oldEnd, int newStart, int newEnd) {
+
+        int prefix = 0;
+        while (oldStart + prefix < oldEnd && newStart + prefix < newEnd
+                && mOldText.charAt(oldStart + prefix) == mNewText.charAt(newStart + prefix)) {
+            prefix++;
+        }
+
+        if (prefix > 0) {
+            addMatch(oldStart, newStart, prefix);
+            oldStart += prefix;
+            newStart += prefix;
+        }
+
+        int suffix = 0;
+        while (oldEnd - suffix > oldStart && newEnd - suffix > newStart
+                && mOldText.charAt(oldEnd - suffix - 1) == mNewText.charAt(newEnd - suffix - 1)) {
+            suffix++;
+        }
+
+        oldEnd -= suffix;
+        newEnd -= suffix;
+
+        if (oldStart < oldEnd && newStart < newEnd) {
+
+            if (!findMiddleSnake(oldStart, oldEnd, newStart, newEnd)) return false;
+
+            final int snakeOldStart = mSnake[0];
+            final int snakeNewStart = mSnake[1];
+            final int snakeOldEnd = mSnake[2];
+            final int snakeNewEnd = mSnake[3];
+
+            if (!diff(oldStart, snakeOldStart, newStart, snakeNewStart)) return false;
+            if (snakeOldEnd > snakeOldStart) {
+                addMatch(snakeOldStart, snakeNewStart, snakeOldEnd - snakeOldStart);
+            }
+            if (!diff(snakeOldEnd, oldEnd, snakeNewEnd, newEnd)) return false;
+
+        }
+
+        if (suffix > 0) addMatch(oldEnd, newEnd, suffix);
+
+        return true;
+
+    }
+
+    /**
+     * Searches forwards from the start and backwards from the end of both sections at once, until
+     * the two searches overlap. The run of unchanged chars at the point of overlap is stored in
+     * {@link #mSnake}, as old start, new start, old end and new end.
+     *
+     * @return False if the search was abandoned
+     */
+    private boolean findMiddleSnake(int oldStart, int oldEnd, int newStart, int newEnd) {
+
+        final int n = oldEnd - oldStart;
+        final int m = newEnd - newStart;
+        final int delta = n - m;
+        final boolean isDeltaOdd = (delta & 1) != 0;
+        final int max = Math.min((n + m + 1) / 2, MAX_EDIT_DISTANCE);
+        final int offset = max + 1;
+
+        if (mForward == null || mForward.length < (2 * max) + 3) {
+            mForward = new int[(2 * max) + 3];
+            mBackward = new int[(2 * max) + 3];
+        }
+
+        final int[] forward = mForward;
+        final int[] backward = mBackward;
+
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= max; d++) {
+
+            for (int k = -d; k <= d; k += 2) {
+
+                int x = (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]))
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+
+                final int xStart = x;
+                final int yStart = y;
+
+                while (x < n && y < m
+                        && mOldText.charAt(oldStart + x) == mNewText.charAt(newStart + y)) {
+                    x++;
+                    y++;
+                }
+
+                forward[offset + k] = x;
+                work += 1 + (x - xStart);
+
+                if (isDeltaOdd && k >= delta - (d - 1) && k <= delta + (d - 1)
+                        && x + backward[offset + delta - k] >= n) {
+                    setSnake(oldStart + xStart, newStart + yStart, oldStart + x, newStart + y);
+                    return true;
+                }
+
+            }
+
+            for (int k = -d; k <= d; k += 2) {
+
+                int u = (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1]))
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1;
+                int v = u - k;
+
+                final int uStart = u;
+                final int vStart = v;
+
+                while (u < n && v < m
+                        && mOldText.charAt(oldEnd - 1 - u) == mNewText.charAt(newEnd - 1 - v)) {
+                    u++;
+                    v++;
+                }
+
+                backward[offset + k] = u;
+                work += 1 + (u - uStart);
+
+                if (!isDeltaOdd && delta - k >= -d && delta - k <= d
+                        && u + forward[offset + delta - k] >= n) {
+                    setSnake(oldEnd - u, newEnd - v, oldEnd - uStart, newEnd - vStart);
+                    return true;
+                }
+
+            }
+
+            if (work > MAX_WORK || mHunks.isOverBudget()) return false;
+
+        }
+
+        //The searches always overlap by d == (n + m + 1) / 2, so max was limited
+        return false;
+
+    }
+
+    private void setSnake(int oldStart, int newStart, int oldEnd, int newEnd) {
+        mSnake[0] = oldStart;
+        mSnake[1] = newStart;
+        mSnake[2] = oldEnd;
+        mSnake[3] = newEnd;
+    }
+
+    private void addMatch(int oldIndex, int newIndex, int length) {
+
+        //Runs found either side of a recursion boundary may continue one another
+        if (matchesLength > 0
+                && mMatches[matchesLength - 3] + mMatches[matchesLength - 1] == oldIndex
+                && mMatches[matchesLength - 2] + mMatches[matchesLength - 1] == newIndex) {
+            mMatches[matchesLength - 1] += length;
+            return;
+        }
+
+        if (matchesLength + 3 > mMatches.length) {
+            final int[] matches = new int[mMatches.length * 2];
+            System.arraycopy(mMatches, 0, matches, 0, matchesLength);
+            mMatches = matches;
+        }
+
+        mMatches[matchesLength++] = oldIndex;
+        mMatches[matchesLength++] = newIndex;
+        mMatches[matchesLength++] = length;
+
+    }
+
+}
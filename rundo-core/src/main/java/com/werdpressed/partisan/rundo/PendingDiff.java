@@ -0,0 +1,213 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Old and new text captured for a commit, which are compared with a {@link DiffStrategy} the first
+ * time {@link #getItem()} is called.
+ *
+ * If the strategy returns false, throws, or reports invalid hunks, the whole of both texts is
+ * stored as a single replacement with {@link DiffStrategies#WHOLE_REPLACE}, so a commit always
+ * produces an Item.
+ *
+ * A commit still waiting to be compared, or part way through, can be cancelled with
+ * {@link #cancel()} once a newer commit is captured, and its text merged into the newer one with
+ * {@link #mergeAfter(PendingDiff, CharSequence)}. Strategies check for cancellation each time they
+ * check {@link DiffStrategy.Hunks#isOverBudget()}, so a long comparison of stale text is abandoned
+ * part way through, rather than run to completion before the newer commit can start.
+ *
+ * @author Tom Calver
+ */
+final class PendingDiff {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETE = 1;
+    private static final int CANCELLED = 2;
+
+    private CharSequence mOldText, mNewText;
+    private int mOffset;
+    private final DiffStrategy mDiffStrategy;
+    private final long diffTimeBudget;
+
+    private final AtomicInteger mState = new AtomicInteger(PENDING);
+
+    private SubtractStrings.Item mItem = null;
+    private long diffNanos;
+
+    /**
+     * Time of the last change to the text included in this commit, as reported by
+     * {@link System#nanoTime()}. Only used on the thread that created this.
+     */
+    private long changeNanos;
+
+    /**
+     * Neither text is copied, so they must not be modified until {@link #getItem()} has returned.
+     *
+     * @param oldText Section of text before changes
+     * @param newText Section of text after changes
+     * @param offset Index at which both sections begin in their larger texts
+     * @param diffStrategy Strategy used to compare old and new text
+     * @param diffTimeBudget Time, in milliseconds, after which diffStrategy is asked to give up
+     */
+    PendingDiff(
+            CharSequence oldText,
+            CharSequence newText,
+            int offset,
+            DiffStrategy diffStrategy,
+            long diffTimeBudget
+    ) {
+
+        mOldText = oldText;
+        mNewText = newText;
+        mOffset = offset;
+        mDiffStrategy = diffStrategy;
+        this.diffTimeBudget = diffTimeBudget;
+
+    }
+
+    /**
+     * Compares old and new text on the first call, which may take up to the time budget passed to
+     * the constructor, and returns the same Item on each call after.
+     *
+     * @return Differences between old and new text, or null if this was cancelled before the
+     * comparison completed
+     */
+    synchronized SubtractStrings.Item getItem() {
+
+        if (isCancelled()) return null;
+
+        if (mItem != null) return mItem;
+
+        final long startNanos = System.nanoTime();
+
+        final HunkCollector hunks = new HunkCollector(mOldText, mNewText, mOffset,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(diffTimeBudget), this);
+
+        try {
+            //A strategy that completes after the budget has passed keeps its result
+            if (mDiffStrategy.findHunks(mOldText, mNewText, hunks)) {
+                mItem = hunks.getItem();
+            }
+        } catch (RuntimeException e) {
+            mItem = null;
+        }
+
+        //The strategy may have given up early for this, so its result is incomplete
+        if (isCancelled()) return null;
+
+        if (mItem == null) mItem = getWholeReplaceItem();
+
+        diffNanos = System.nanoTime() - startNanos;
+
+        //Once complete, the Item is kept even if a newer commit is captured before it is published
+        return mState.compareAndSet(PENDING, COMPLETE) ? mItem : null;
+
+    }
+
+    /**
+     * Stores the whole of old and new text as a single hunk, as
+     * {@link DiffStrategies#WHOLE_REPLACE} does, without comparing them. Used when comparison
+     * fails, so that the commit is still added to history, which the baseline text has already
+     * moved past.
+     *
+     * @return Replacement of all of old text by all of new text
+     */
+    SubtractStrings.Item getWholeReplaceItem() {
+
+        final int oldLength = mOldText.length();
+        final int newLength = mNewText.length();
+        final int deviationType;
+
+        if (oldLength == 0 && newLength == 0) {
+            deviationType = SubtractStrings.UNCHANGED;
+        } else if (oldLength == 0) {
+            deviationType = SubtractStrings.ADDITION;
+        } else if (newLength == 0) {
+            deviationType = SubtractStrings.DELETION;
+        } else {
+            deviationType = SubtractStrings.REPLACEMENT;
+        }
+
+        return new SubtractStrings.Item(
+                mOffset,
+                mOffset + oldLength,
+                mOffset + newLength,
+                deviationType,
+                mOldText.toString(),
+                mNewText.toString()
+        );
+
+    }
+
+    /**
+     * Stops the comparison, if it has not yet completed. Safe to call from any thread.
+     *
+     * @return True if this was cancelled, and so will never produce an Item. False if the
+     * comparison has already completed, or this was already cancelled.
+     */
+    boolean cancel() {
+        return mState.compareAndSet(PENDING, CANCELLED);
+    }
+
+    boolean isCancelled() {
+        return mState.get() == CANCELLED;
+    }
+
+    /**
+     * Widens this commit to also include the changes of older, which must have been captured
+     * immediately before this and then cancelled. The combined section of new text is read from
+     * currentText, and the matching old text is rebuilt by reversing the changes of this commit
+     * and then those of older. Must be called before this is compared.
+     *
+     * @param older Commit captured immediately before this, which has been cancelled
+     * @param currentText Whole of the text, as it is after the changes of this commit
+     */
+    void mergeAfter(PendingDiff older, CharSequence currentText) {
+
+        final int start = Math.min(older.mOffset, mOffset);
+
+        //End of the combined section, in the text between the two commits and after both
+        final int middleEnd = Math.max(
+                older.mOffset + older.mNewText.length(), mOffset + mOldText.length()
+        );
+        final int end = middleEnd + (mNewText.length() - mOldText.length());
+
+        final String newText = SubtractStringUtils.substring(currentText, start, end);
+
+        final StringBuilder oldText = new StringBuilder(newText);
+        oldText.replace(
+                mOffset - start, mOffset - start + mNewText.length(), mOldText.toString()
+        );
+        oldText.replace(
+                older.mOffset - start,
+                older.mOffset - start + older.mNewText.length(),
+                older.mOldText.toString()
+        );
+
+        mOldText = oldText.toString();
+        mNewText = newText;
+        mOffset = start;
+
+    }
+
+    /**
+     *
+     * @return Time spent comparing text in {@link #getItem()}, in nanoseconds, or 0 if it has
+     * not yet been called.
+     */
+    synchronized long getDiffNanos() {
+        return diffNanos;
+    }
+
+    void setChangeNanos(long changeNanos) {
+        this.changeNanos = changeNanos;
+    }
+
+    long getChangeNanos() {
+        return changeNanos;
+    }
+
+}
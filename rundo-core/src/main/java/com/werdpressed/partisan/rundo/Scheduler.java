@@ -0,0 +1,27 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Runs tasks for a {@link HistoryEngine} on the single thread from which it is used, such as the
+ * main thread of an app, or the thread that owns a document on a server.
+ *
+ * @author Tom Calver
+ */
+public interface Scheduler {
+
+    /**
+     * Runs task on the engine's thread. May be called from any thread.
+     */
+    void post(Runnable task);
+
+    /**
+     * Runs task on the engine's thread once delayMillis has passed, unless it is removed with
+     * {@link #removeCallbacks(Runnable)} first.
+     */
+    void postDelayed(Runnable task, long delayMillis);
+
+    /**
+     * Removes any pending runs of task posted with {@link #postDelayed(Runnable, long)}.
+     */
+    void removeCallbacks(Runnable task);
+
+}
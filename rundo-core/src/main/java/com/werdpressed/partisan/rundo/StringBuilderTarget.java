@@ -0,0 +1,76 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * {@link TextTarget} backed by a {@link StringBuilder}, for use of {@link HistoryEngine} away
+ * from any text field, for example on a server. Changes made through {@link #replace(int, int,
+ * CharSequence)} are reported to the engine, so all changes to the text should be made through
+ * this class.
+ *
+ * @author Tom Calver
+ */
+public final class StringBuilderTarget implements TextTarget {
+
+    private final StringBuilder mText;
+    private HistoryEngine mEngine;
+
+    /**
+     *
+     * @param text Initial text, which is copied
+     */
+    public StringBuilderTarget(CharSequence text) {
+        mText = new StringBuilder(text);
+    }
+
+    /**
+     *
+     * @param engine Engine to report changes to, or null to stop reporting them
+     */
+    public void setHistoryEngine(HistoryEngine engine) {
+        mEngine = engine;
+    }
+
+    @Override
+    public void replace(int start, int end, CharSequence text) {
+
+        final HistoryEngine engine = mEngine;
+
+        if (engine != null) engine.beforeTextChanged(mText, start, end - start, text.length());
+
+        mText.replace(start, end, text.toString());
+
+        if (engine != null) {
+            engine.onTextChanged(mText, start, end - start, text.length());
+            engine.afterTextChanged();
+        }
+
+    }
+
+    /**
+     * Unused, as there is no cursor.
+     */
+    @Override
+    public void setSelection(int index) {
+        //Unused
+    }
+
+    @Override
+    public int length() {
+        return mText.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return mText.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return mText.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return mText.toString();
+    }
+
+}
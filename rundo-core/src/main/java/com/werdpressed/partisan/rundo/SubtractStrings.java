@@ -0,0 +1,709 @@
+package com.werdpressed.partisan.rundo;
+
+import com.werdpressed.partisan.rundo.utils.SubtractStringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+final class SubtractStrings {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SubtractStrings";
+
+    static final int ADDITION = 55023;
+    static final int REPLACEMENT = ADDITION + 1;
+    static final int DELETION = ADDITION + 2;
+    static final int UNCHANGED = ADDITION + 3;
+    static final int MULTIPLE = ADDITION + 4;
+
+    private final CharSequence mOldText, mNewText;
+    private final int mOffset;
+
+    private int firstDeviation = -1;
+    private int lastDeviationOldText = -1;
+    private int lastDeviationNewText = -1;
+    private int deviationType = -1;
+
+    private Item mItem = null;
+
+    /**
+     * Neither argument is copied. Both are read in place by index, so they must not be modified
+     * until {@link #getItem()} has returned.
+     *
+     * @param oldString Text before changes
+     * @param newString Text after changes
+     */
+    public SubtractStrings(CharSequence oldString, CharSequence newString) {
+        this(oldString, newString, 0);
+    }
+
+    /**
+     * Compares sections of two larger texts, which begin at the same index in both and are
+     * otherwise equal. Deviations in the {@link Item} returned by {@link #getItem()} are in
+     * relation to the larger texts.
+     *
+     * @param oldString Section of text before changes
+     * @param newString Section of text after changes
+     * @param offset Index at which both sections begin in their larger texts
+     */
+    SubtractStrings(CharSequence oldString, CharSequence newString, int offset) {
+
+        mOldText = oldString;
+        mNewText = newString;
+        mOffset = offset;
+
+    }
+
+    /**
+     * Calculates the first point of deviation between old and new text, by comparing each
+     * individual char from beginning to end.
+     *
+     * @see #getFirstDeviation()
+     */
+    private int findFirstDeviation() {
+        return SubtractStringUtils.findCommonPrefixLength(mOldText, mNewText);
+    }
+
+    /**
+     * Calculates the last point of deviation in relation to new text, by comparing old and new
+     * text char by char from their ends, and stepping backwards until the two differ.
+     *
+     * This is only required when text is longer after changes. Otherwise the last deviation is
+     * always the end of each text, and the change is stored as a {@link #DELETION} from, or a
+     * {@link #REPLACEMENT} of, everything after {@link #firstDeviation}.
+     *
+     * Under certain circumstances, running both this and {@link #findFirstDeviation()} alone will
+     * produce incorrect results, especially when words are duplicated. For example:
+     *
+     * <pre>
+     *     {@code
+     *     String oldText = "one";
+     *     String newText = "one one";
+     *
+     *     //The first deviation is at index 3, and the common suffix "one" means the last deviation
+     *     //is at index 4, so the altered text would be " ".
+     *     }
+     * </pre>
+     *
+     * This is because the first deviation comes after the first "e", yet when stepping back from
+     * the ends of both texts, the "e" at the end of "one" in old text is matched against the final
+     * "e" of new text. It is effectively counted twice. The last deviation is adjusted in
+     * {@link #findLastDeviationOffsetSize(int)} to account for such situations.
+     *
+     * @return Last point of deviation between old and new text, in relation to new text.
+     *
+     * @see #getLastDeviationNewText()
+     * @see Item#getLastDeviationNewText()
+     */
+    private int findLastDeviationNewText() {
+
+        final int commonSuffixLength =
+                SubtractStringUtils.findCommonSuffixLength(mOldText, mNewText);
+
+        return findLastDeviationOffsetSize(commonSuffixLength);
+
+    }
+
+    /**
+     * Adjusts the last point at which new text diverges from old, due to the reasons outlined in
+     * {@link #findLastDeviationNewText()}. This is achieved by calculating the difference in
+     * length between the old and new text, and comparing each {@code char} of new text, counting
+     * back from the end, to the char which sits that offset further towards the end. If the same
+     * value is found, then the current index is used to determine the true last deviation value.
+     * For example, with "one" and "one one":
+     *
+     * <pre>
+     *     {@code
+     *     //Indexes counted back from the end of new text
+     *     newText = { 'e', 'n', 'o', ' ', 'e', 'n', 'o' };
+     *     }
+     * </pre>
+     *
+     * In this case, the potential offset size (the length of the old text subtracted from the
+     * new) is {@code (7 - 3) = 4}. Thus, the char 4 back from the end of new text, which is
+     * 'e', is compared to the char 0 back from the end, which is also 'e'. As the two values
+     * match, the final value returned is (length of new text - (current index - potential offset
+     * size)), which translates to (7 - (4 - 4)) = 7.
+     *
+     * No chars are copied or reversed; the backwards index {@code i} is translated to the forward
+     * index {@code (newText.length() - 1 - i)}.
+     *
+     * @param commonSuffixLength Number of chars at the end of old and new text that are equal.
+     *                           This is the value that will be checked and possibly altered before
+     *                           being returned.
+     * @return The adjusted last deviation value, in relation to new text.
+     */
+    private int findLastDeviationOffsetSize(int commonSuffixLength) {
+
+        final int newLength = mNewText.length();
+        final int potentialOffsetSize = newLength - mOldText.length();
+
+        final int maxValue = Math.min(commonSuffixLength + potentialOffsetSize, newLength);
+
+        final int reverseDeviation = Math.max(commonSuffixLength, potentialOffsetSize);
+
+        for (int i = reverseDeviation; i < maxValue; i++) {
+
+            final int distanceFromEnd = i - reverseDeviation;
+
+            if (mNewText.charAt(newLength - 1 - i)
+                    == mNewText.charAt(newLength - 1 - distanceFromEnd)) {
+                return (newLength - distanceFromEnd);
+            }
+        }
+
+        return newLength;
+
+    }
+
+    /**
+     * Populates {@link #firstDeviation}, {@link #lastDeviationOldText} and
+     * {@link #lastDeviationNewText}. When old and new text are equal, all three are {@code 0}.
+     */
+    private void findDeviations() {
+
+        firstDeviation = findFirstDeviation();
+
+        if (isTextLengthEqual() && firstDeviation == mOldText.length()) {
+            firstDeviation = 0;
+            lastDeviationOldText = 0;
+            lastDeviationNewText = 0;
+        } else if (isNewTextLonger()) {
+            lastDeviationNewText = findLastDeviationNewText();
+            lastDeviationOldText = lastDeviationNewText - findLengthDifference();
+
+            //The adjusted suffix can overlap the common prefix, i.e. "aa" and "aa aa". As every
+            //char after firstDeviation in old text is then part of the common suffix, the change
+            //is an addition at firstDeviation.
+            if (lastDeviationOldText < firstDeviation) {
+                lastDeviationOldText = firstDeviation;
+                lastDeviationNewText = firstDeviation + findLengthDifference();
+            }
+        } else {
+            lastDeviationOldText = mOldText.length();
+            lastDeviationNewText = mNewText.length();
+        }
+
+    }
+
+    /**
+     * Populates the {@link #deviationType} field with one of three constant values,
+     * representing an ADDITION of text, from old to new, with no text from old replaced. DELETION,
+     * showing a removal of text from old to new, in which no text was replaced, and a REPLACEMENT,
+     * in which text has been either added or removed from old to new, and overwritten the old text
+     * in part or in its entirety. For example:
+     *
+     * <b>ADDITION:</b> The difference between "one" and "one two".
+     *
+     * <b>DELETION:</b> The difference between "one two" and "one".
+     *
+     * <b>REPLACEMENT:</b> The difference between "one" and "two".
+     *
+     * Text is an ADDITION or DELETION when both are equal after the section between
+     * {@link #firstDeviation} and the last deviation is omitted from the longer of the two. This
+     * is checked in place, by comparing the chars either side of the omitted section.
+     *
+     * @see #getDeviationType()
+     */
+    private int findDeviationType() {
+
+        if (firstDeviation == -1) findDeviations();
+
+        int deviationType;
+
+        if (isNewTextLonger()) {
+            deviationType = (isEqualWithOmission(mNewText, mOldText, lastDeviationNewText))
+                    ? ADDITION
+                    : REPLACEMENT;
+        } else if(isTextLengthEqual()) {
+            deviationType = (isOldTextEqualToNewText())
+                    ? UNCHANGED
+                    : REPLACEMENT;
+        } else {
+            deviationType = (isEqualWithOmission(mOldText, mNewText, lastDeviationOldText))
+                    ? DELETION
+                    : REPLACEMENT;
+        }
+
+        return deviationType;
+
+    }
+
+    /**
+     * @param longer The longer of old and new text
+     * @param shorter The shorter of old and new text
+     * @param omissionEnd End index of the omitted section in {@code longer}. The section begins
+     *                    at {@link #firstDeviation}, and chars before it are always equal.
+     * @return True if {@code longer} is equal to {@code shorter} once the omitted section is
+     * removed.
+     */
+    private boolean isEqualWithOmission(CharSequence longer, CharSequence shorter, int omissionEnd) {
+
+        final int remainingLength = longer.length() - omissionEnd;
+
+        return (omissionEnd - firstDeviation) == (longer.length() - shorter.length())
+                && SubtractStringUtils.regionMatches(
+                        longer, omissionEnd, shorter, firstDeviation, remainingLength);
+
+    }
+
+    /**
+     * Texts of equal length only share a last deviation of {@code 0} when they are identical.
+     *
+     * @see #findDeviations()
+     */
+    private boolean isOldTextEqualToNewText() {
+        return isTextLengthEqual() && (getLastDeviationOldText() == 0);
+    }
+
+    private boolean isNewTextLonger() {
+        return (mNewText.length() > mOldText.length());
+    }
+
+    private boolean isTextLengthEqual() {
+        return (mNewText.length() == mOldText.length());
+    }
+
+    private int findLongestLength() {
+        return Math.max(mNewText.length(), mOldText.length());
+    }
+
+    private int findShortestLength() {
+        return Math.min(mNewText.length(), mOldText.length());
+    }
+
+    private int findLengthDifference() {
+        return findLongestLength() - findShortestLength();
+    }
+
+    /**
+     *
+     * @return First deviation
+     */
+    int getFirstDeviation() {
+
+        if (firstDeviation == -1) {
+            findDeviations();
+        }
+
+        return  firstDeviation;
+    }
+
+    int getLastDeviationOldText() {
+
+        if (lastDeviationOldText == -1) {
+            findDeviations();
+        }
+
+        return lastDeviationOldText;
+    }
+
+    int getLastDeviationNewText() {
+
+        if (lastDeviationNewText == -1) {
+            findDeviations();
+        }
+
+        return lastDeviationNewText;
+    }
+
+    /**
+     *
+     * @return Deviation type, in the form of an int value. For a String representation, use
+     * {@link #valueOfDeviation(int)} ()}
+     */
+    int getDeviationType() {
+        if (deviationType == -1) {
+            deviationType = findDeviationType();
+        }
+        return deviationType;
+    }
+
+    /**
+     *
+     * @return Text before changes, as passed to the constructor
+     */
+    CharSequence getOldText() {
+        return mOldText;
+    }
+
+    /**
+     * Converts {@code int} value returned by {@link #getDeviationType()} to {@link String}
+     * representation.
+     * @param deviationType Value return from {@link #getDeviationType()}
+     * @return String representation of argument if argument is valid. Otherwise, {@code null}
+     */
+    @SuppressWarnings("unused")
+    public static String valueOfDeviation(int deviationType) {
+
+        switch (deviationType) {
+            case ADDITION:
+                return "Addition";
+            case DELETION:
+                return "Deletion";
+            case REPLACEMENT:
+                return "Replacement";
+            case UNCHANGED:
+                return "Unchanged";
+            case MULTIPLE:
+                return "Multiple";
+            default:
+                return null;
+        }
+
+    }
+
+    /**
+     *
+     * @return If text has been added or replaced, returns a substring of the new text that has
+     * been altered in respect to old text.
+     */
+    public String getAlteredText() {
+
+        switch (getDeviationType()) {
+            case ADDITION:
+            case REPLACEMENT:
+                return SubtractStringUtils.substring(
+                        mNewText, firstDeviation, lastDeviationNewText);
+        }
+
+        return "";
+    }
+
+    /**
+     *
+     * @return If text has been deleted or replaced, returns a substring of the old text that has
+     * been removed or overwritten.
+     */
+    public String getReplacedText() {
+
+        switch (getDeviationType()) {
+            case DELETION:
+            case REPLACEMENT:
+                return SubtractStringUtils.substring(
+                        mOldText, firstDeviation, lastDeviationOldText);
+        }
+
+        return "";
+
+    }
+
+    /**
+     *
+     * @return Encapsulates all important information relating to the differences between old and
+     * new text.
+     * @see com.werdpressed.partisan.rundo.SubtractStrings.Item
+     */
+    public synchronized Item getItem() {
+
+        if (mItem == null) {
+            mItem = new Item(
+                    getFirstDeviation() + mOffset,
+                    getLastDeviationOldText() + mOffset,
+                    getLastDeviationNewText() + mOffset,
+                    getDeviationType(),
+                    getReplacedText(),
+                    getAlteredText()
+            );
+        }
+
+        return mItem;
+    }
+
+    /**
+     * Model class which encapsulates all important pieces of information relating to the differences
+     * between two {@link String}s, calculated by {@link SubtractStrings}
+     */
+    static final class Item implements FixedSizeArrayDeque.Measurable {
+
+        /**
+         * Approximate memory used by an Item, excluding its text.
+         */
+        private static final long BASE_SIZE_IN_BYTES = 56;
+
+        /**
+         * Approximate memory used by the two objects holding text not held in a
+         * {@link TextBuffer}, excluding their chars.
+         */
+        private static final long TEXT_OBJECTS_SIZE_IN_BYTES = 64;
+
+        private final int firstDeviation, lastDeviationOldText, lastDeviationNewText, deviationType;
+        private final Item[] hunks;
+
+        /**
+         * Text not held in a {@link TextBuffer}, or null if held in {@link #mChars}.
+         */
+        private final CharSequence replacedText, alteredText;
+
+        /**
+         * Chunk of a {@link TextBuffer} holding replaced text followed by altered text from
+         * {@link #charsOffset}, or null if text is held in {@link #replacedText} and
+         * {@link #alteredText}. Held directly, rather than through a {@link TextBuffer.Span} for
+         * each, so that a stored Item is a single object besides the chunk it shares.
+         */
+        private final char[] mChars;
+        private final int charsOffset, replacedLength, alteredLength;
+
+        Item(
+                int firstDeviation,
+                int lastDeviationOldText,
+                int lastDeviationNewText,
+                int deviationType,
+                CharSequence replacedText,
+                CharSequence alteredText
+        ) {
+            this.firstDeviation = firstDeviation;
+            this.lastDeviationOldText = lastDeviationOldText;
+            this.lastDeviationNewText = lastDeviationNewText;
+            this.deviationType = deviationType;
+            this.replacedText = replacedText;
+            this.alteredText = alteredText;
+            mChars = null;
+            charsOffset = 0;
+            replacedLength = replacedText.length();
+            alteredLength = alteredText.length();
+            hunks = null;
+        }
+
+        /**
+         * Creates an Item with text held in a chunk of a {@link TextBuffer}.
+         *
+         * @param chars Chunk holding replaced text followed by altered text
+         * @param charsOffset Index in chars of the first char of replaced text
+         */
+        Item(
+                int firstDeviation,
+                int lastDeviationOldText,
+                int lastDeviationNewText,
+                int deviationType,
+                char[] chars,
+                int charsOffset,
+                int replacedLength,
+                int alteredLength
+        ) {
+            this.firstDeviation = firstDeviation;
+            this.lastDeviationOldText = lastDeviationOldText;
+            this.lastDeviationNewText = lastDeviationNewText;
+            this.deviationType = deviationType;
+            replacedText = null;
+            alteredText = null;
+            mChars = chars;
+            this.charsOffset = charsOffset;
+            this.replacedLength = replacedLength;
+            this.alteredLength = alteredLength;
+            hunks = null;
+        }
+
+        /**
+         * Creates an Item of type {@link #MULTIPLE}, which spans from the start of the first hunk
+         * to the end of the last.
+         *
+         * @param hunks Two or more Items, in order of index. Each Item's deviations are relative
+         *              to text in which all hunks before it have been redone, and all hunks after
+         *              it have not.
+         */
+        Item(Item[] hunks) {
+
+            final Item lastHunk = hunks[hunks.length - 1];
+            int lengthChange = 0;
+
+            for (int i = 0; i < hunks.length - 1; i++) {
+                lengthChange += hunks[i].lastDeviationNewText - hunks[i].lastDeviationOldText;
+            }
+
+            firstDeviation = hunks[0].firstDeviation;
+            lastDeviationOldText = lastHunk.lastDeviationOldText - lengthChange;
+            lastDeviationNewText = lastHunk.lastDeviationNewText;
+            deviationType = MULTIPLE;
+            replacedText = "";
+            alteredText = "";
+            mChars = null;
+            charsOffset = 0;
+            replacedLength = 0;
+            alteredLength = 0;
+            this.hunks = hunks;
+
+        }
+
+        /**
+         * Reverts text from new to old.
+         *
+         * @param text Text matching the new text this Item was created from
+         */
+        void undo(TextTarget text) {
+
+            if (hunks != null) {
+                for (int i = hunks.length - 1; i >= 0; i--) {
+                    hunks[i].undo(text);
+                }
+                return;
+            }
+
+            switch (deviationType) {
+                case ADDITION:
+                    text.replace(firstDeviation, lastDeviationNewText, "");
+                    break;
+                case DELETION:
+                    text.replace(firstDeviation, firstDeviation, getReplacedText());
+                    break;
+                case REPLACEMENT:
+                    text.replace(firstDeviation, lastDeviationNewText, getReplacedText());
+                    break;
+                case UNCHANGED:
+                    break;
+                default:
+                    break;
+            }
+
+        }
+
+        /**
+         * Reinstates text from old to new.
+         *
+         * @param text Text matching the old text this Item was created from
+         */
+        void redo(TextTarget text) {
+
+            if (hunks != null) {
+                for (Item hunk : hunks) {
+                    hunk.redo(text);
+                }
+                return;
+            }
+
+            switch (deviationType) {
+                case ADDITION:
+                    text.replace(firstDeviation, firstDeviation, getAlteredText());
+                    break;
+                case DELETION:
+                    text.replace(firstDeviation, lastDeviationOldText, "");
+                    break;
+                case REPLACEMENT:
+                    text.replace(firstDeviation, lastDeviationOldText, getAlteredText());
+                    break;
+                case UNCHANGED:
+                    break;
+                default:
+                    break;
+            }
+
+        }
+
+        /**
+         *
+         * @return First point of deviation between old and new text.
+         */
+        public int getFirstDeviation() {
+            return firstDeviation;
+        }
+
+        /**
+         *
+         * @return Last point of deviation between old and new text, in relation to old text.
+         */
+        public int getLastDeviationOldText() {
+            return lastDeviationOldText;
+        }
+
+        /**
+         *
+         * @return Last point of deviation between old and new text, in relation to new text.
+         */
+        public int getLastDeviationNewText() {
+            return lastDeviationNewText;
+        }
+
+        /**
+         *
+         * @return Deviation type in the form of an {@code int}. Value will correlate to
+         * {@link #ADDITION}. {@link #REPLACEMENT}, {@link #DELETION}, {@link #UNCHANGED} or
+         * {@link #MULTIPLE}. For a {@link String} representation, use
+         * {@link #valueOfDeviation(int)}
+         *
+         * @see #valueOfDeviation(int)
+         */
+        public int getDeviationType() {
+            return deviationType;
+        }
+
+        /**
+         *
+         * @return Section of old text replaced by new text, if applicable. May be held in a
+         * {@link TextBuffer}, so should be copied with {@code toString()} if kept.
+         */
+        public CharSequence getReplacedText() {
+            return (mChars == null)
+                    ? replacedText
+                    : TextBuffer.wrap(mChars, charsOffset, replacedLength);
+        }
+
+        /**
+         *
+         * @return Section of new text replaced by old text, if applicable. May be held in a
+         * {@link TextBuffer}, so should be copied with {@code toString()} if kept.
+         */
+        public CharSequence getAlteredText() {
+            return (mChars == null)
+                    ? alteredText
+                    : TextBuffer.wrap(mChars, charsOffset + replacedLength, alteredLength);
+        }
+
+        /**
+         *
+         * @return True if the text of this Item is held in a {@link TextBuffer}.
+         */
+        boolean isStored() {
+            return mChars != null;
+        }
+
+        /**
+         *
+         * @return Items for each hunk, if this is of type {@link #MULTIPLE}. Otherwise, an empty
+         * List.
+         */
+        public List<Item> getHunks() {
+            return (hunks == null)
+                    ? Collections.<Item>emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(hunks));
+        }
+
+        /**
+         *
+         * @return Combined length of replaced and altered text, including that of all hunks.
+         */
+        int getTextLength() {
+
+            int textLength = replacedLength + alteredLength;
+
+            if (hunks != null) {
+                for (Item hunk : hunks) {
+                    textLength += hunk.getTextLength();
+                }
+            }
+
+            return textLength;
+        }
+
+        /**
+         *
+         * @return Approximate memory used by this Item, in bytes. Dominated by the size of
+         * {@link #getReplacedText()} and {@link #getAlteredText()}, or of all hunks.
+         */
+        @Override
+        public long getSizeInBytes() {
+
+            long sizeInBytes = BASE_SIZE_IN_BYTES + 2L * (replacedLength + alteredLength);
+
+            if (mChars == null) sizeInBytes += TEXT_OBJECTS_SIZE_IN_BYTES;
+
+            if (hunks != null) {
+                for (Item hunk : hunks) {
+                    sizeInBytes += hunk.getSizeInBytes();
+                }
+            }
+
+            return sizeInBytes;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.werdpressed.partisan.rundo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+/**
+ * Append-only store for the text of {@link SubtractStrings.Item}s in the undo and redo queues,
+ * in the manner of the add buffer of a piece table. Text is copied into the buffer once, and
+ * Items then refer to it, so that splitting an Item into words or lines, or extending it with
+ * further typing, shares chars already stored rather than copying them.
+ *
+ * A stored Item holds the chunk and offset of its text itself, with replaced text followed by
+ * altered text, so that each entry of history is a single object rather than an Item and an object
+ * for each of its texts. {@link Span}s are only created as views of that text when it is read.
+ *
+ * Chars are held in fixed size chunks. A chunk is only reachable through the Items and Spans that
+ * refer to it, so is freed once every Item using it has left the queues.
+ *
+ * Text at least as long as the threshold set with {@link #setOffHeapThreshold(int)} is instead
+ * held outside the Java heap, in a direct {@link CharBuffer} of its own, so that a paste or
+ * deletion of several megabytes does not fill the heap. Its chars are only read from there when
+ * the Item is undone, redone or written to a journal.
+ *
+ * @author Tom Calver
+ */
+final class TextBuffer {
+
+    static final int CHUNK_LENGTH = 8 * 1024;
+
+    private char[] mChunk;
+    private int chunkLength;
+
+    /**
+     * Most recently appended text, returned again if the same text is appended next, as happens
+     * when text is cut and pasted elsewhere.
+     */
+    private Span mLastSpan;
+
+    private int offHeapThreshold;
+
+    TextBuffer() {
+        mChunk = new char[CHUNK_LENGTH];
+        offHeapThreshold = History.DEFAULT_OFF_HEAP_THRESHOLD;
+    }
+
+    /**
+     *
+     * @param length Length of text from which it is held outside the heap. Applies to text
+     *               appended from then on.
+     */
+    void setOffHeapThreshold(int length) {
+        offHeapThreshold = length;
+    }
+
+    /**
+     *
+     * @param item Item to store
+     * @return Item equivalent to item, with all text held in this buffer.
+     */
+    SubtractStrings.Item store(SubtractStrings.Item item) {
+
+        if (item.getDeviationType() == SubtractStrings.MULTIPLE) {
+
+            final SubtractStrings.Item[] hunks = item.getHunks().toArray(
+                    new SubtractStrings.Item[item.getHunks().size()]
+            );
+
+            for (int i = 0; i < hunks.length; i++) {
+                hunks[i] = store(hunks[i]);
+            }
+
+            return new SubtractStrings.Item(hunks);
+
+        }
+
+        if (item.isStored()) return item;
+
+        final CharSequence replacedText = item.getReplacedText();
+        final CharSequence alteredText = item.getAlteredText();
+        final int replacedLength = replacedText.length();
+        final int alteredLength = alteredText.length();
+
+        if (replacedLength == 0 && alteredLength == 0) return item;
+
+        //Text held outside the heap is kept there, so the Item refers to each text separately
+        if (replacedLength >= offHeapThreshold || alteredLength >= offHeapThreshold
+                || isOffHeap(replacedText) || isOffHeap(alteredText)) {
+
+            final CharSequence storedReplacedText = append(replacedText);
+            final CharSequence storedAlteredText = append(alteredText);
+
+            if (storedReplacedText == replacedText && storedAlteredText == alteredText) {
+                return item;
+            }
+
+            return new SubtractStrings.Item(
+                    item.getFirstDeviation(),
+                    item.getLastDeviationOldText(),
+                    item.getLastDeviationNewText(),
+                    item.getDeviationType(),
+                    storedReplacedText,
+                    storedAlteredText
+            );
+
+        }
+
+        //Text already held in this buffer, such as a word split from a stored Item, is not copied
+        final Span span;
+
+        if (alteredLength == 0) {
+            span = appendToChunk(replacedText);
+        } else if (replacedLength == 0) {
+            span = appendToChunk(alteredText);
+        } else {
+            span = appendToChunk(new StringBuilder(replacedLength + alteredLength)
+                    .append(replacedText)
+                    .append(alteredText));
+        }
+
+        return new SubtractStrings.Item(
+                item.getFirstDeviation(),
+                item.getLastDeviationOldText(),
+                item.getLastDeviationNewText(),
+                item.getDeviationType(),
+                span.chars,
+                span.offset,
+                replacedLength,
+                alteredLength
+        );
+
+    }
+
+    /**
+     *
+     * @param text Text to store
+     * @return Text held in this buffer, equal to text.
+     */
+    CharSequence append(CharSequence text) {
+
+        if (isStored(text)) return text;
+
+        if (text.length() >= offHeapThreshold) return toOffHeap(text);
+
+        return appendToChunk(text);
+
+    }
+
+    /**
+     * Appends second to first. If first was the last text appended to this buffer, only second is
+     * copied, so that a run of typing extends the text already stored rather than copying it.
+     *
+     * @return Text held in this buffer, equal to first followed by second.
+     */
+    CharSequence concat(CharSequence first, CharSequence second) {
+
+        if (second.length() == 0) return append(first);
+
+        if (first instanceof Span) {
+
+            final Span span = (Span) first;
+            final int length = second.length();
+
+            if (span.chars == mChunk && span.offset + span.length == chunkLength
+                    && chunkLength + length <= mChunk.length) {
+
+                for (int i = 0; i < length; i++) {
+                    mChunk[chunkLength + i] = second.charAt(i);
+                }
+
+                chunkLength += length;
+
+                mLastSpan = new Span(mChunk, span.offset, span.length + length);
+
+                return mLastSpan;
+
+            }
+
+        }
+
+        return append(new StringBuilder(first.length() + second.length())
+                .append(first)
+                .append(second));
+
+    }
+
+    /**
+     *
+     * @param text Text to store, which is copied unless it is already held in a chunk
+     * @return Span of a chunk, equal to text.
+     */
+    private Span appendToChunk(CharSequence text) {
+
+        if (text instanceof Span) return (Span) text;
+
+        final int length = text.length();
+
+        if (mLastSpan != null && mLastSpan.length == length && isEqual(mLastSpan, text)) {
+            return mLastSpan;
+        }
+
+        final char[] chunk = reserve(length);
+        final int offset = (chunk == mChunk) ? chunkLength : 0;
+
+        for (int i = 0; i < length; i++) {
+            chunk[offset + i] = text.charAt(i);
+        }
+
+        commit(chunk, length);
+
+        mLastSpan = new Span(chunk, offset, length);
+
+        return mLastSpan;
+
+    }
+
+    /**
+     *
+     * @return Chunk with room for length chars from {@link #chunkLength}, which is a new chunk of
+     * its own for text longer than half of {@link #CHUNK_LENGTH}.
+     */
+    private char[] reserve(int length) {
+
+        if (chunkLength + length <= mChunk.length) return mChunk;
+
+        if (length > CHUNK_LENGTH / 2) return new char[length];
+
+        mChunk = new char[CHUNK_LENGTH];
+        chunkLength = 0;
+
+        return mChunk;
+
+    }
+
+    private void commit(char[] chunk, int length) {
+        if (chunk == mChunk) chunkLength += length;
+    }
+
+    /**
+     *
+     * @return View of length chars of chunk from offset.
+     */
+    static CharSequence wrap(char[] chunk, int offset, int length) {
+        return (length == 0) ? "" : new Span(chunk, offset, length);
+    }
+
+    private static boolean isStored(CharSequence text) {
+        return (text instanceof Span) || isOffHeap(text) || text.length() == 0;
+    }
+
+    static boolean isOffHeap(CharSequence text) {
+        return (text instanceof CharBuffer) && ((CharBuffer) text).isDirect();
+    }
+
+    /**
+     *
+     * @return Read only copy of text, held outside the heap as UTF-16, so that any char can be
+     * read without decoding those before it.
+     */
+    private static CharSequence toOffHeap(CharSequence text) {
+
+        final CharBuffer buffer = ByteBuffer.allocateDirect(text.length() * 2)
+                .order(ByteOrder.nativeOrder())
+                .asCharBuffer();
+
+        if (text instanceof String) {
+            buffer.put((String) text);
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put(text.charAt(i));
+            }
+        }
+
+        buffer.flip();
+
+        return buffer.asReadOnlyBuffer();
+
+    }
+
+    private static boolean isEqual(Span span, CharSequence text) {
+
+        for (int i = 0; i < span.length; i++) {
+            if (span.chars[span.offset + i] != text.charAt(i)) return false;
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Section of a {@link TextBuffer}, through which text held in it is read. The chars it refers
+     * to are never changed.
+     */
+    static final class Span implements CharSequence {
+
+        private final char[] chars;
+        private final int offset, length;
+
+        private Span(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+
+            return chars[offset + index];
+
+        }
+
+        /**
+         *
+         * @return Span sharing the chars of this Span.
+         */
+        @Override
+        public CharSequence subSequence(int start, int end) {
+
+            if (start < 0 || end < start || end > length) {
+                throw new IndexOutOfBoundsException(
+                        "start " + start + ", end " + end + ", length " + length
+                );
+            }
+
+            return (start == end) ? "" : new Span(chars, offset + start, end - start);
+
+        }
+
+        /**
+         * Copies chars between start and end to dest, from destStart.
+         */
+        void getChars(int start, int end, char[] dest, int destStart) {
+            System.arraycopy(chars, offset + start, dest, destStart, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+
+    }
+
+}
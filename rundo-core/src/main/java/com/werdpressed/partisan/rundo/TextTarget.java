@@ -0,0 +1,29 @@
+package com.werdpressed.partisan.rundo;
+
+/**
+ * Text tracked by a {@link HistoryEngine}, which is read to find changes and altered to undo and
+ * redo them. Implementations wrap whatever holds the text, such as an editable text field or a
+ * {@link StringBuilder}.
+ *
+ * @author Tom Calver
+ */
+public interface TextTarget extends CharSequence {
+
+    /**
+     * Replaces the text between start and end. Changes made through this method must be reported
+     * to the {@link HistoryEngine} in the same way as any other change.
+     *
+     * @param start Start index, inclusive
+     * @param end End index, exclusive
+     * @param text Replacement text, which is empty to delete
+     */
+    void replace(int start, int end, CharSequence text);
+
+    /**
+     * Moves the cursor, if the text has one, after a change has been undone or redone.
+     *
+     * @param index Index at which the change began
+     */
+    void setSelection(int index);
+
+}
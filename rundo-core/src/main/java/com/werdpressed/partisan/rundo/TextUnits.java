@@ -0,0 +1,115 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the ends of words or lines within changed text, for {@link History#GRANULARITY_WORD} and
+ * {@link History#GRANULARITY_LINE}.
+ *
+ * A unit ends after the first boundary char that follows a non-boundary char, so a word keeps the
+ * space typed after it, and any further spaces begin the next unit. Boundary chars are whitespace
+ * for words, and line feeds for lines. Only chars within, or immediately before, changed text are
+ * read, so the cost of each check depends on the size of the change rather than the whole text.
+ *
+ * @author Tom Calver
+ */
+final class TextUnits {
+
+    private TextUnits() { throw new AssertionError(); }
+
+    /**
+     *
+     * @param s Text after a change, as passed to
+     *          {@link HistoryEngine#onTextChanged(CharSequence, int, int, int)}
+     * @param start Index at which inserted chars begin
+     * @param count Number of inserted chars
+     * @param granularity One of {@link History#GRANULARITY_WORD} or
+     *                    {@link History#GRANULARITY_LINE}.
+     *                    Any other value never ends a unit.
+     * @return True if any inserted char ends a unit
+     */
+    static boolean isUnitEnded(CharSequence s, int start, int count, int granularity) {
+
+        if (granularity != History.GRANULARITY_WORD && granularity != History.GRANULARITY_LINE) {
+            return false;
+        }
+
+        for (int i = Math.max(start, 1); i < start + count; i++) {
+            if (isUnitEnd(s, i, granularity)) return true;
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Splits additions and deletions into one Item per unit. Replacements, and Items with more
+     * than one hunk, are a single change of intent, so are never split.
+     *
+     * @param item Item to split
+     * @param granularity One of {@link History#GRANULARITY_WORD} or
+     *                    {@link History#GRANULARITY_LINE}.
+     *                    With any other value, item is returned whole.
+     * @return Items in the order they should be added to the undo queue, which redone in that
+     * order are equivalent to item
+     */
+    static List<SubtractStrings.Item> split(SubtractStrings.Item item, int granularity) {
+
+        final int deviationType = item.getDeviationType();
+
+        if ((granularity != History.GRANULARITY_WORD && granularity != History.GRANULARITY_LINE)
+                || (deviationType != SubtractStrings.ADDITION
+                        && deviationType != SubtractStrings.DELETION)) {
+            return Collections.singletonList(item);
+        }
+
+        final boolean isAddition = (deviationType == SubtractStrings.ADDITION);
+        final CharSequence text = (isAddition) ? item.getAlteredText() : item.getReplacedText();
+
+        if (text.length() == 0) return Collections.singletonList(item);
+
+        final List<SubtractStrings.Item> units = new ArrayList<>();
+        final int firstDeviation = item.getFirstDeviation();
+        int unitStart = 0;
+
+        for (int i = 1; i <= text.length(); i++) {
+
+            if (i < text.length() && !isUnitEnd(text, i, granularity)) continue;
+
+            final int unitEnd = (i == text.length()) ? i : i + 1;
+            //Shares the chars of text, if held in a TextBuffer
+            final CharSequence unit = text.subSequence(unitStart, unitEnd);
+            final int unitIndex = firstDeviation + unitStart;
+
+            if (isAddition) {
+                units.add(new SubtractStrings.Item(
+                        unitIndex, unitIndex, unitIndex + unit.length(),
+                        SubtractStrings.ADDITION, "", unit));
+            } else {
+                //Deleted as if by backspace, from the last unit to the first
+                units.add(0, new SubtractStrings.Item(
+                        unitIndex, unitIndex + unit.length(), unitIndex,
+                        SubtractStrings.DELETION, unit, ""));
+            }
+
+            unitStart = unitEnd;
+            i = unitEnd;
+
+        }
+
+        return units;
+
+    }
+
+    private static boolean isUnitEnd(CharSequence s, int index, int granularity) {
+        return isBoundary(s.charAt(index), granularity)
+                && !isBoundary(s.charAt(index - 1), granularity);
+    }
+
+    private static boolean isBoundary(char c, int granularity) {
+        return (granularity == History.GRANULARITY_LINE) ? (c == '\n') : Character.isWhitespace(c);
+    }
+
+}
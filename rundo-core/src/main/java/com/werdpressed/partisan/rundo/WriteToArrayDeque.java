@@ -0,0 +1,54 @@
+package com.werdpressed.partisan.rundo;
+
+public interface WriteToArrayDeque {
+
+    String getNewString();
+    String getOldString();
+
+    /**
+     *
+     * @return Index at which the text returned by {@link #getOldString()} and
+     * {@link #getNewString()} begins, if they are sections of the full text rather than all of it.
+     * Otherwise {@code 0}.
+     */
+    int getTextOffset();
+
+    /**
+     *
+     * @return Strategy used to compare the text returned by {@link #getOldString()} and
+     * {@link #getNewString()}
+     */
+    DiffStrategy getDiffStrategy();
+
+    /**
+     *
+     * @return Time in milliseconds the {@link DiffStrategy} may spend on each comparison
+     */
+    long getDiffTimeBudget();
+
+    /**
+     * Called on the main thread once old and new text have been captured, and before they are
+     * compared on a background thread. New text becomes the baseline for any further changes.
+     *
+     * @param pending Comparison of the text returned by {@link #getOldString()} and
+     *                {@link #getNewString()} for this commit
+     */
+    void notifyArrayDequeDataPending(PendingDiff pending);
+
+    /**
+     * Called on the main thread once the comparison started by the matching
+     * {@link #notifyArrayDequeDataPending(PendingDiff)} call is complete. Calls arrive in the
+     * same order as their {@link #notifyArrayDequeDataPending(PendingDiff)} counterparts.
+     *
+     * A comparison cancelled with {@link PendingDiff#cancel()}, and merged into a newer commit,
+     * is not reported.
+     *
+     * @param pending Comparison passed to {@link #notifyArrayDequeDataPending(PendingDiff)}
+     * @param item Differences between old and new text. If they could not be calculated, the
+     *             whole of both texts as a single replacement.
+     */
+    void notifyArrayDequeDataReady(PendingDiff pending, SubtractStrings.Item item);
+
+    void setIsRunning(boolean isRunning);
+
+}
@@ -0,0 +1,120 @@
+package com.werdpressed.partisan.rundo;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Commits text to a {@link WriteToArrayDeque}. Old and new text are captured on the thread that
+ * runs this, compared by a {@link PendingDiff} on a background thread, and the resulting
+ * {@link SubtractStrings.Item} is published back through a {@link Scheduler}.
+ *
+ * By default, all instances share a single background thread, so items are always published in
+ * the order their text was captured.
+ */
+final class WriteToArrayDequeRunnable implements Runnable {
+
+    static final Executor DIFF_EXECUTOR =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "RunDo-diff");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
+    private final WeakReference<WriteToArrayDeque> mWriteToArrayDeque;
+    private final Scheduler mScheduler;
+    private final Executor mDiffExecutor;
+
+    /**
+     *
+     * @param writeToArrayDeque Receives text to commit
+     * @param scheduler Publishes Items on the thread writeToArrayDeque is used from
+     * @param diffExecutor Compares text. Must run tasks in the order they are submitted.
+     */
+    WriteToArrayDequeRunnable(
+            WriteToArrayDeque writeToArrayDeque,
+            Scheduler scheduler,
+            Executor diffExecutor
+    ) {
+        mWriteToArrayDeque = new WeakReference<>(writeToArrayDeque);
+        mScheduler = scheduler;
+        mDiffExecutor = diffExecutor;
+    }
+
+    @Override
+    public void run() {
+
+        final WriteToArrayDeque writeToArrayDeque = mWriteToArrayDeque.get();
+
+        final String mNewString, mOldString;
+        final int mTextOffset;
+
+        try {
+            mNewString = writeToArrayDeque.getNewString();
+            mOldString = writeToArrayDeque.getOldString();
+            mTextOffset = writeToArrayDeque.getTextOffset();
+        } catch (NullPointerException e) {
+            //Occurs on config change
+            return;
+        }
+
+        writeToArrayDeque.setIsRunning(false);
+
+        if (mNewString == null || mOldString == null) return;
+
+        final PendingDiff mPendingDiff = new PendingDiff(
+                mOldString,
+                mNewString,
+                mTextOffset,
+                writeToArrayDeque.getDiffStrategy(),
+                writeToArrayDeque.getDiffTimeBudget()
+        );
+
+        writeToArrayDeque.notifyArrayDequeDataPending(mPendingDiff);
+
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                SubtractStrings.Item mItem;
+
+                try {
+                    mItem = mPendingDiff.getItem();
+                } catch (RuntimeException e) {
+                    //Never dropped, as the baseline text has already moved past this commit
+                    mItem = mPendingDiff.getWholeReplaceItem();
+                }
+
+                //Cancelled and merged into a newer commit, which is published instead
+                if (mItem == null || mPendingDiff.isCancelled()) return;
+
+                publish(mPendingDiff, mItem);
+
+            }
+        });
+
+    }
+
+    private void publish(final PendingDiff pendingDiff, final SubtractStrings.Item item) {
+
+        mScheduler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                final WriteToArrayDeque writeToArrayDeque = mWriteToArrayDeque.get();
+
+                if (writeToArrayDeque != null) {
+                    writeToArrayDeque.notifyArrayDequeDataReady(pendingDiff, item);
+                }
+
+            }
+        });
+
+    }
+
+}
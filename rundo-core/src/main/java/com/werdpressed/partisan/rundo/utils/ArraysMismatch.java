@@ -0,0 +1,40 @@
+package com.werdpressed.partisan.rundo.utils;
+
+/**
+ * Version for Java 7 and Android, which lack {@code Arrays.mismatch()}. Replaced on Java 9 onwards
+ * by the version in src/main/java9, through the multi-release jar. {@link CharMismatch} only
+ * copies text into blocks for {@link #mismatch(char[], char[], int)} if {@link #isAvailable()}
+ * returns true, as comparing them one char at a time here would cost more than comparing the
+ * text in place.
+ *
+ * @author Tom Calver
+ */
+final class ArraysMismatch {
+
+    private ArraysMismatch() { throw new AssertionError(); }
+
+    /**
+     *
+     * @return False, as this version compares one char at a time. Not a constant, so that it is
+     * not copied into callers when compiled.
+     */
+    static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     *
+     * @return Index of the first char that differs between the first length chars of first and
+     * second, or -1 if they are equal.
+     */
+    static int mismatch(char[] first, char[] second, int length) {
+
+        for (int i = 0; i < length; i++) {
+            if (first[i] != second[i]) return i;
+        }
+
+        return -1;
+
+    }
+
+}
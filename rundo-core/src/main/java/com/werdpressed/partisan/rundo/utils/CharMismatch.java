@@ -0,0 +1,152 @@
+package com.werdpressed.partisan.rundo.utils;
+
+/**
+ * Finds where two regions of text first differ, counting from either their start or their end,
+ * for {@link SubtractStringUtils}.
+ *
+ * On Java 9 onwards, where the multi-release jar provides a version of {@link ArraysMismatch}
+ * that calls {@code Arrays.mismatch()}, text held in a {@link String}, {@link StringBuilder} or
+ * {@link StringBuffer} is copied a block at a time with {@code getChars()}, and each pair of
+ * blocks is compared several chars at once. Blocks are small enough to stay in cache between
+ * being copied and compared. Otherwise, including on Android, or for other types of
+ * {@link CharSequence}, or short regions, chars are compared one at a time with
+ * {@link CharSequence#charAt(int)}, without being copied. Both return the same results, and
+ * neither allocates once a thread has made its first comparison.
+ *
+ * @author Tom Calver
+ */
+final class CharMismatch {
+
+    /**
+     * Regions shorter than this are compared one char at a time, as copying them into blocks
+     * costs more than it saves.
+     */
+    static final int MIN_BLOCK_COMPARE_LENGTH = 256;
+
+    private static final int BLOCK_LENGTH = 2048;
+
+    private static final boolean IS_ARRAYS_MISMATCH_AVAILABLE = ArraysMismatch.isAvailable();
+
+    //Reused, as comparisons run for each commit on both the main and background threads
+    private static final ThreadLocal<char[][]> BLOCKS = new ThreadLocal<char[][]>() {
+        @Override
+        protected char[][] initialValue() {
+            return new char[2][BLOCK_LENGTH];
+        }
+    };
+
+    private CharMismatch() { throw new AssertionError(); }
+
+    /**
+     *
+     * @param first First text
+     * @param firstStart Start index of region in first text
+     * @param second Second text
+     * @param secondStart Start index of region in second text
+     * @param length Length of both regions
+     * @return Number of chars at the start of both regions that are equal. At most length.
+     */
+    static int findPrefixLength(
+            CharSequence first, int firstStart, CharSequence second, int secondStart, int length
+    ) {
+
+        if (!isBlockCompareUsed(first, second, length)) {
+            for (int i = 0; i < length; i++) {
+                if (first.charAt(firstStart + i) != second.charAt(secondStart + i)) return i;
+            }
+            return length;
+        }
+
+        final char[][] blocks = BLOCKS.get();
+
+        for (int i = 0; i < length; i += BLOCK_LENGTH) {
+
+            final int blockLength = Math.min(BLOCK_LENGTH, length - i);
+
+            getChars(first, firstStart + i, blockLength, blocks[0]);
+            getChars(second, secondStart + i, blockLength, blocks[1]);
+
+            final int index = ArraysMismatch.mismatch(blocks[0], blocks[1], blockLength);
+
+            if (index >= 0) return i + index;
+
+        }
+
+        return length;
+
+    }
+
+    /**
+     *
+     * @param first First text
+     * @param firstEnd End index of region in first text, exclusive
+     * @param second Second text
+     * @param secondEnd End index of region in second text, exclusive
+     * @param length Length of both regions
+     * @return Number of chars at the end of both regions that are equal. At most length.
+     */
+    static int findSuffixLength(
+            CharSequence first, int firstEnd, CharSequence second, int secondEnd, int length
+    ) {
+
+        if (!isBlockCompareUsed(first, second, length)) {
+            for (int i = 0; i < length; i++) {
+                if (first.charAt(firstEnd - 1 - i) != second.charAt(secondEnd - 1 - i)) return i;
+            }
+            return length;
+        }
+
+        final char[][] blocks = BLOCKS.get();
+
+        for (int i = 0; i < length; i += BLOCK_LENGTH) {
+
+            final int blockLength = Math.min(BLOCK_LENGTH, length - i);
+
+            getChars(first, firstEnd - i - blockLength, blockLength, blocks[0]);
+            getChars(second, secondEnd - i - blockLength, blockLength, blocks[1]);
+
+            if (ArraysMismatch.mismatch(blocks[0], blocks[1], blockLength) >= 0) {
+
+                //Only the block holding the last difference is searched back from its end
+                int index = blockLength - 1;
+
+                while (blocks[0][index] == blocks[1][index]) {
+                    index--;
+                }
+
+                return i + (blockLength - 1 - index);
+
+            }
+
+        }
+
+        return length;
+
+    }
+
+    private static boolean isBlockCompareUsed(
+            CharSequence first, CharSequence second, int length
+    ) {
+        return IS_ARRAYS_MISMATCH_AVAILABLE && length >= MIN_BLOCK_COMPARE_LENGTH
+                && hasGetChars(first) && hasGetChars(second);
+    }
+
+    private static boolean hasGetChars(CharSequence text) {
+        return text instanceof String
+                || text instanceof StringBuilder
+                || text instanceof StringBuffer;
+    }
+
+    private static void getChars(CharSequence text, int start, int length, char[] dest) {
+
+        if (text instanceof String) {
+            ((String) text).getChars(start, start + length, dest, 0);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(start, start + length, dest, 0);
+        } else {
+            ((StringBuffer) text).getChars(start, start + length, dest, 0);
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.werdpressed.partisan.rundo.utils;
+
+import java.util.Arrays;
+
+/**
+ * Static methods which operate on {@code char[]} and {@link CharSequence}, predominantly for use
+ * with {@link com.werdpressed.partisan.rundo.SubtractStrings}
+ */
+public final class SubtractStringUtils {
+
+    private SubtractStringUtils() { throw new AssertionError(); }
+
+    /**
+     * Reverses input {@code char[]}.
+     * @param input {@code char[]} to reverse.
+     * @return input {@code char[]} reversed.
+     */
+    public static char[] reverseCharArray(char[] input){
+
+        char[] output = new char[input.length];
+        char temp;
+        int index = 0;
+
+        for (int i = (output.length - 1); i >= (output.length/2); i--) {
+            temp = input[i];
+            output[i] = input[index];
+            output[index] = temp;
+            index++;
+        }
+
+        return output;
+    }
+
+    /**
+     * Determines whether the contents of two arrays are equal, after a section from one array is
+     * removed.
+     *
+     * Used to determine whether text has been replaced, or added to/deleted from.
+     *
+     * @param arrOne First array
+     * @param arrTwo Second array
+     * @param omissionStart Start index of section to remove from the longer or arrOne and arrTwo.
+     * @param omissionEnd End index of section to remove.
+     * @return True if both arrOne and arrTwo are equal after section specified in omissionStart
+     * and omissionEnd is removed from the longer of the two.
+     */
+    public static boolean isArrayEqualWithOmission(
+            char[] arrOne, char[] arrTwo, int omissionStart, int omissionEnd
+    ) {
+
+        final boolean isArrOneLonger = (arrOne.length > arrTwo.length);
+
+        final char[] arrOneCopy = (isArrOneLonger)
+                ? omitCharArrayEntriesAtIndexes(arrOne.clone(), omissionStart, omissionEnd)
+                : arrOne.clone();
+
+        final char[] arrTwoCopy = (!isArrOneLonger)
+                ? omitCharArrayEntriesAtIndexes(arrTwo.clone(), omissionStart, omissionEnd)
+                : arrTwo.clone();
+
+        return Arrays.equals(arrOneCopy, arrTwoCopy);
+
+    }
+
+    /**
+     * Removes the section between the index positions at omissionStart and omissionEnd from arr.
+     * @param arr Input array
+     * @param omissionStart Start index of section to remove.
+     * @param omissionEnd End index of section to remove.
+     * @return The array arr, less the section between omissionStart and omissionEnd.
+     */
+    public static char[] omitCharArrayEntriesAtIndexes(char[] arr, int omissionStart, int omissionEnd) {
+
+        final int omissionLength = omissionEnd - omissionStart;
+        char[] output = new char[arr.length - omissionLength];
+
+        for (int i = 0; i < arr.length; i++) {
+            if (i < omissionStart) {
+                output[i] = arr[i];
+            } else if (i >= omissionEnd) {
+                output[i - omissionLength] = arr[i];
+            }
+
+        }
+
+        return output;
+
+    }
+
+    /**
+     * Compares two {@link CharSequence}s from the beginning, in place, several chars at a time
+     * where the runtime allows.
+     * @param first First text
+     * @param second Second text
+     * @return Number of chars at the start of both texts that are equal. At most the length of the
+     * shorter of the two.
+     * @see CharMismatch
+     */
+    public static int findCommonPrefixLength(CharSequence first, CharSequence second) {
+
+        final int shortestLength = Math.min(first.length(), second.length());
+
+        return CharMismatch.findPrefixLength(first, 0, second, 0, shortestLength);
+
+    }
+
+    /**
+     * Compares two {@link CharSequence}s from the end, in place, without reversing either, several
+     * chars at a time where the runtime allows.
+     * @param first First text
+     * @param second Second text
+     * @return Number of chars at the end of both texts that are equal. At most the length of the
+     * shorter of the two.
+     * @see CharMismatch
+     */
+    public static int findCommonSuffixLength(CharSequence first, CharSequence second) {
+
+        final int shortestLength = Math.min(first.length(), second.length());
+
+        return CharMismatch.findSuffixLength(
+                first, first.length(), second, second.length(), shortestLength);
+
+    }
+
+    /**
+     * Equivalent of {@link String#regionMatches(int, String, int, int)} for any
+     * {@link CharSequence}.
+     * @param first First text
+     * @param firstOffset Start index of region in first text
+     * @param second Second text
+     * @param secondOffset Start index of region in second text
+     * @param length Number of chars to compare
+     * @return True if both regions are within bounds, and equal.
+     */
+    public static boolean regionMatches(
+            CharSequence first, int firstOffset, CharSequence second, int secondOffset, int length
+    ) {
+
+        if (firstOffset < 0 || secondOffset < 0 || length < 0
+                || firstOffset > first.length() - length
+                || secondOffset > second.length() - length) {
+            return false;
+        }
+
+        return CharMismatch.findPrefixLength(first, firstOffset, second, secondOffset, length)
+                == length;
+
+    }
+
+    /**
+     * Copies a section of a {@link CharSequence} to a new {@link String}. Only the section itself
+     * is copied, regardless of the type of {@code text}.
+     * @param text Input text
+     * @param start Start index, inclusive
+     * @param end End index, exclusive
+     * @return Section of text between start and end
+     */
+    public static String substring(CharSequence text, int start, int end) {
+
+        if (text instanceof String) return ((String) text).substring(start, end);
+
+        return new StringBuilder(end - start).append(text, start, end).toString();
+
+    }
+
+}
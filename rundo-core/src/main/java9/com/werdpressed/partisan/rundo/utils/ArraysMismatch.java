@@ -0,0 +1,33 @@
+package com.werdpressed.partisan.rundo.utils;
+
+import java.util.Arrays;
+
+/**
+ * Calls {@code Arrays.mismatch()}, which compares several chars at once. Replaces the version in
+ * src/main/java on Java 9 onwards, from the META-INF/versions/9 directory of the multi-release
+ * jar.
+ *
+ * @author Tom Calver
+ */
+final class ArraysMismatch {
+
+    private ArraysMismatch() { throw new AssertionError(); }
+
+    /**
+     *
+     * @return True, as this version calls {@code Arrays.mismatch()}.
+     */
+    static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     *
+     * @return Index of the first char that differs between the first length chars of first and
+     * second, or -1 if they are equal.
+     */
+    static int mismatch(char[] first, char[] second, int length) {
+        return Arrays.mismatch(first, 0, length, second, 0, length);
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link ComposedEdit} makes the same change as the edits recorded in it, with a
+ * single replacement, and that stepping several entries through history changes the tracked text
+ * only once.
+ *
+ * @author Tom Calver
+ */
+public class ComposedEditTest {
+
+    @Test
+    public void composedEditMatchesRecordedEdits() {
+
+        final Random random = new Random(16);
+
+        for (int i = 0; i < 200; i++) {
+
+            final String text = "the quick brown fox jumps over the lazy dog";
+            final StringBuilder expected = new StringBuilder(text);
+            final ComposedEdit edit = new ComposedEdit(text.length());
+
+            for (int edits = random.nextInt(6); edits >= 0; edits--) {
+
+                final int start = random.nextInt(expected.length() + 1);
+                final int end = Math.min(expected.length(), start + random.nextInt(6));
+                final String replacement = "xyz".substring(random.nextInt(4));
+
+                edit.replace(start, end, replacement);
+                expected.replace(start, end, replacement);
+
+            }
+
+            assertEquals(expected.length(), edit.length());
+
+            final StringBuilderTarget target = new StringBuilderTarget(text);
+
+            if (edit.compose(target)) edit.apply(target);
+
+            assertEquals(expected.toString(), target.toString());
+
+        }
+
+    }
+
+    @Test
+    public void editsThatCancelOutAreNotApplied() {
+
+        final ComposedEdit edit = new ComposedEdit(7);
+
+        edit.replace(3, 3, " and");
+        edit.replace(3, 7, "");
+
+        assertFalse(edit.compose("one two"));
+
+    }
+
+    @Test
+    public void onlyChangedSectionIsReplaced() {
+
+        final ComposedEdit edit = new ComposedEdit(13);
+        final CountingTarget target = new CountingTarget("one two three");
+
+        edit.replace(4, 7, "2");
+        edit.replace(4, 5, "two");
+
+        assertFalse(edit.compose(target));
+
+        edit.replace(0, 3, "1");
+
+        assertTrue(edit.compose(target));
+        edit.apply(target);
+
+        assertEquals("1 two three", target.toString());
+        assertEquals(1, target.getReplaceCount());
+        assertEquals(3, target.getReplacedLength());
+
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void editPastEndThrows() {
+
+        final ComposedEdit edit = new ComposedEdit(3);
+
+        edit.replace(0, 3, "");
+        edit.replace(0, 1, "");
+
+    }
+
+    @Test
+    public void multiStepUndoReplacesTextOnce() {
+
+        final CountingTarget target = new CountingTarget("one");
+        final ManualScheduler scheduler = new ManualScheduler();
+        final HistoryEngine engine =
+                new HistoryEngine(target, scheduler, ManualScheduler.SAME_THREAD);
+
+        engine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        engine.setTimerLength(0);
+        target.setHistoryEngine(engine);
+
+        for (String text : new String[] { " two", " three", " four" }) {
+            target.replace(target.length(), target.length(), text);
+            engine.commit();
+            scheduler.runPosted();
+        }
+
+        target.resetCounts();
+
+        engine.undo(3);
+        scheduler.runPosted();
+
+        assertEquals("one", target.toString());
+        assertEquals(1, target.getReplaceCount());
+        assertEquals(0, engine.getHistoryIndex());
+
+        engine.redo(2);
+        scheduler.runPosted();
+
+        assertEquals("one two three", target.toString());
+        assertEquals(2, target.getReplaceCount());
+
+        engine.undo(1);
+        engine.redo(2);
+        scheduler.runPosted();
+
+        assertEquals("one two three four", target.toString());
+        assertEquals(3, engine.getHistoryIndex());
+
+    }
+
+    /**
+     * Counts the changes made to a {@link StringBuilderTarget}, which reports them to its engine.
+     */
+    private static final class CountingTarget implements TextTarget {
+
+        private final StringBuilderTarget mText;
+        private int replaceCount, replacedLength;
+
+        CountingTarget(String text) {
+            mText = new StringBuilderTarget(text);
+        }
+
+        void setHistoryEngine(HistoryEngine engine) {
+            mText.setHistoryEngine(engine);
+        }
+
+        void resetCounts() {
+            replaceCount = 0;
+            replacedLength = 0;
+        }
+
+        int getReplaceCount() {
+            return replaceCount;
+        }
+
+        int getReplacedLength() {
+            return replacedLength;
+        }
+
+        @Override
+        public void replace(int start, int end, CharSequence text) {
+            replaceCount++;
+            replacedLength += end - start;
+            mText.replace(start, end, text);
+        }
+
+        @Override
+        public void setSelection(int index) {
+            mText.setSelection(index);
+        }
+
+        @Override
+        public int length() {
+            return mText.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mText.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return mText.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return mText.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that a {@link DeadlineScheduler} posts a single check to the other Scheduler for any
+ * number of delayed tasks, and runs each task once its deadline has passed.
+ *
+ * @author Tom Calver
+ */
+public class DeadlineSchedulerTest {
+
+    //Long enough that no deadline with it passes while the test runs
+    private static final long LONG_DELAY_MILLIS = 60 * 1000;
+
+    private CountingScheduler mOther;
+    private DeadlineScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mOther = new CountingScheduler();
+        mScheduler = new DeadlineScheduler(mOther);
+    }
+
+    @Test
+    public void restartingTaskPostsNothingMore() {
+
+        final CountingTask task = new CountingTask();
+
+        for (int i = 0; i < 100; i++) {
+            mScheduler.postDelayed(task, LONG_DELAY_MILLIS);
+        }
+
+        assertEquals(1, mOther.postDelayedCount);
+        assertEquals(0, mOther.removeCallbacksCount);
+
+    }
+
+    @Test
+    public void tasksShareOneCheck() {
+
+        for (int i = 0; i < 10; i++) {
+            mScheduler.postDelayed(new CountingTask(), LONG_DELAY_MILLIS);
+        }
+
+        assertEquals(1, mOther.postDelayedCount);
+        assertEquals(1, mOther.mDelayed.size());
+
+    }
+
+    @Test
+    public void earlierDeadlineMovesCheck() {
+
+        mScheduler.postDelayed(new CountingTask(), LONG_DELAY_MILLIS);
+        mScheduler.postDelayed(new CountingTask(), 0);
+
+        assertEquals(2, mOther.postDelayedCount);
+        assertEquals(1, mOther.removeCallbacksCount);
+        assertEquals(1, mOther.mDelayed.size());
+
+    }
+
+    @Test
+    public void onlyExpiredTasksRun() {
+
+        final CountingTask expired = new CountingTask();
+        final CountingTask waiting = new CountingTask();
+
+        mScheduler.postDelayed(waiting, LONG_DELAY_MILLIS);
+        mScheduler.postDelayed(expired, 0);
+        mOther.runDelayed();
+
+        assertEquals(1, expired.runCount);
+        assertEquals(0, waiting.runCount);
+
+        //The check is posted again for the task still waiting
+        assertEquals(1, mOther.mDelayed.size());
+
+        mOther.runDelayed();
+
+        assertEquals(1, expired.runCount);
+        assertEquals(0, waiting.runCount);
+
+    }
+
+    @Test
+    public void removedTaskNeverRuns() {
+
+        final CountingTask task = new CountingTask();
+
+        mScheduler.postDelayed(task, 0);
+        mScheduler.removeCallbacks(task);
+        mOther.runDelayed();
+
+        assertEquals(0, task.runCount);
+        assertEquals(0, mOther.mDelayed.size());
+
+    }
+
+    @Test
+    public void taskMayPostItselfAgain() {
+
+        final CountingTask task = new CountingTask() {
+            @Override
+            public void run() {
+                super.run();
+                if (runCount < 3) mScheduler.postDelayed(this, 0);
+            }
+        };
+
+        mScheduler.postDelayed(task, 0);
+
+        for (int i = 0; i < 5; i++) {
+            mOther.runDelayed();
+        }
+
+        assertEquals(3, task.runCount);
+        assertEquals(0, mOther.mDelayed.size());
+
+    }
+
+    @Test
+    public void postIsForwarded() {
+
+        final CountingTask task = new CountingTask();
+
+        mScheduler.post(task);
+
+        assertEquals(1, mOther.mPosted.size());
+        assertSame(task, mOther.mPosted.get(0));
+
+    }
+
+    private static class CountingTask implements Runnable {
+
+        int runCount;
+
+        @Override
+        public void run() {
+            runCount++;
+        }
+
+    }
+
+    /**
+     * Counts the calls made to it, and holds delayed tasks until they are run explicitly,
+     * whatever their delay.
+     */
+    private static final class CountingScheduler implements Scheduler {
+
+        private final List<Runnable> mPosted = new ArrayList<>();
+        private final List<Runnable> mDelayed = new ArrayList<>();
+
+        private int postDelayedCount, removeCallbacksCount;
+
+        @Override
+        public void post(Runnable task) {
+            mPosted.add(task);
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            postDelayedCount++;
+            mDelayed.add(task);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            removeCallbacksCount++;
+            mDelayed.remove(task);
+        }
+
+        void runDelayed() {
+
+            final List<Runnable> delayed = new ArrayList<>(mDelayed);
+            mDelayed.clear();
+
+            for (Runnable task : delayed) {
+                task.run();
+            }
+
+        }
+
+    }
+
+}
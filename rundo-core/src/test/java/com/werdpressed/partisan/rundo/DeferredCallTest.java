@@ -0,0 +1,135 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link History#undo()} and {@link History#redo()} calls made while a commit is still
+ * being compared on the background thread.
+ *
+ * @author Tom Calver
+ */
+public class DeferredCallTest {
+
+    private static final int[] TRACKING_MODES = {
+            History.TRACKING_MODE_DOCUMENT,
+            History.TRACKING_MODE_RANGE
+    };
+
+    private static final String INITIAL_TEXT = "one two three";
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private ManualExecutor mExecutor;
+    private HistoryEngine mEngine;
+
+    @Test
+    public void undoWaitsForPendingCommit() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "2");
+            mEngine.undo();
+
+            //Still being compared, so nothing can be undone yet
+            assertEquals("Mode " + mode, "one 2 three", mText.toString());
+            assertEquals("Mode " + mode, 1, mExecutor.size());
+
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, INITIAL_TEXT, mText.toString());
+            assertEquals("Mode " + mode, 0, mEngine.getHistoryIndex());
+            assertEquals("Mode " + mode, 1, mEngine.getHistorySize());
+
+        }
+
+    }
+
+    @Test
+    public void callsRunInOrderOnceCommitsComplete() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "2");
+            mScheduler.runDelayed();
+            //Complete, but not yet published, so not merged into the next commit
+            mExecutor.runAll();
+            mText.replace(0, 3, "1");
+            mEngine.undo(2);
+            mEngine.redo();
+
+            assertEquals("Mode " + mode, 1, mExecutor.size());
+
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, "one 2 three", mText.toString());
+            assertEquals("Mode " + mode, 1, mEngine.getHistoryIndex());
+            assertEquals("Mode " + mode, 2, mEngine.getHistorySize());
+
+        }
+
+    }
+
+    @Test
+    public void textTypedAfterUndoIsNeverUndone() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "2");
+            mEngine.undo();
+
+            //Typed before the comparison completes, so after the undo was called
+            mText.replace(mText.length(), mText.length(), "zz");
+
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, "one 2 threezz", mText.toString());
+
+            mEngine.commit();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, 2, mEngine.getHistoryIndex());
+            assertEquals("Mode " + mode, 2, mEngine.getHistorySize());
+
+            mEngine.undo();
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, "one 2 three", mText.toString());
+
+            mEngine.undo();
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, INITIAL_TEXT, mText.toString());
+
+        }
+
+    }
+
+    private void setUp(int trackingMode) {
+
+        mText = new StringBuilderTarget(INITIAL_TEXT);
+        mScheduler = new ManualScheduler();
+        mExecutor = new ManualExecutor();
+        mEngine = new HistoryEngine(mText, mScheduler, mExecutor);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setTrackingMode(trackingMode);
+        mEngine.setTimerLength(0);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the hunks reported by each of the {@link DiffStrategies}, and which of them
+ * {@link DiffStrategies#AUTOMATIC} chooses for texts and changes of different lengths.
+ *
+ * @author Tom Calver
+ */
+public class DiffStrategiesTest {
+
+    private static final String OLD_TEXT = createText(1000);
+
+    /**
+     * Replaces three chars at 100 with "##", and inserts "@@" at 900. Neither char is in
+     * {@link #OLD_TEXT}.
+     */
+    private static final String NEW_TEXT = new StringBuilder(OLD_TEXT)
+            .insert(900, "@@")
+            .replace(100, 103, "##")
+            .toString();
+
+    @Test
+    public void prefixSuffixReportsOneHunk() {
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.PREFIX_SUFFIX.findHunks(OLD_TEXT, NEW_TEXT, hunks));
+
+        assertEquals(1, hunks.size());
+        assertSpansBothChanges(hunks.get(0));
+
+    }
+
+    @Test
+    public void multiHunkReportsEachChange() {
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.MULTI_HUNK.findHunks(OLD_TEXT, NEW_TEXT, hunks));
+
+        assertEquals(2, hunks.size());
+        assertArrayEquals(new int[] {100, 103, 100, 102}, hunks.get(0));
+        assertArrayEquals(new int[] {900, 900, 899, 901}, hunks.get(1));
+
+    }
+
+    @Test
+    public void multiHunkGivesUpOverBudget() {
+        assertEquals(false, DiffStrategies.MULTI_HUNK.findHunks(
+                OLD_TEXT, NEW_TEXT, new RecordingHunks(true)));
+    }
+
+    @Test
+    public void wholeReplaceReportsAllText() {
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.WHOLE_REPLACE.findHunks(OLD_TEXT, NEW_TEXT, hunks));
+
+        assertEquals(1, hunks.size());
+        assertArrayEquals(new int[] {0, 1000, 0, 1001}, hunks.get(0));
+
+    }
+
+    @Test
+    public void unchangedTextReportsNoHunks() {
+
+        for (DiffStrategy strategy : new DiffStrategy[] {
+                DiffStrategies.PREFIX_SUFFIX, DiffStrategies.MULTI_HUNK, DiffStrategies.AUTOMATIC
+        }) {
+            final RecordingHunks hunks = new RecordingHunks(false);
+            assertTrue(strategy.findHunks(OLD_TEXT, OLD_TEXT, hunks));
+            assertEquals(0, hunks.size());
+        }
+
+    }
+
+    @Test
+    public void automaticStoresSmallChangeAsOneHunk() {
+
+        //Changed region is 5 + 6 chars, below MIN_MULTI_HUNK_LENGTH
+        final String newText = new StringBuilder(OLD_TEXT)
+                .replace(104, 105, "x")
+                .replace(100, 101, "x")
+                .toString();
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.AUTOMATIC.findHunks(OLD_TEXT, newText, hunks));
+
+        assertEquals(1, hunks.size());
+        assertArrayEquals(new int[] {100, 105, 100, 105}, hunks.get(0));
+
+    }
+
+    @Test
+    public void automaticSplitsChangesFarApart() {
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.AUTOMATIC.findHunks(OLD_TEXT, NEW_TEXT, hunks));
+
+        assertEquals(2, hunks.size());
+
+    }
+
+    @Test
+    public void automaticFallsBackToOneHunkOverBudget() {
+
+        final RecordingHunks hunks = new RecordingHunks(true);
+
+        assertTrue(DiffStrategies.AUTOMATIC.findHunks(OLD_TEXT, NEW_TEXT, hunks));
+
+        assertEquals(1, hunks.size());
+        assertSpansBothChanges(hunks.get(0));
+
+    }
+
+    @Test
+    public void automaticSearchesLessOfLargeText() {
+
+        //The same two changes, with a changed region longer than MAX_LARGE_TEXT_MULTI_HUNK_LENGTH,
+        //in old and new text with a combined length either side of LARGE_TEXT_LENGTH
+        final int distance = DiffStrategies.MAX_LARGE_TEXT_MULTI_HUNK_LENGTH;
+        final int smallLength = (DiffStrategies.LARGE_TEXT_LENGTH / 2) - 1000;
+        final int largeLength = (DiffStrategies.LARGE_TEXT_LENGTH / 2) + 1000;
+
+        assertEquals(2, findAutomaticHunks(smallLength, distance));
+        assertEquals(1, findAutomaticHunks(largeLength, distance));
+
+    }
+
+    /**
+     * {@link SubtractStrings} can extend a hunk past the last change, up to the end of the text,
+     * so only checks that it starts at the first change and covers the second.
+     */
+    private static void assertSpansBothChanges(int[] hunk) {
+        assertEquals(100, hunk[0]);
+        assertEquals(100, hunk[2]);
+        assertTrue(hunk[1] >= 900);
+        assertEquals(hunk[1] + 1, hunk[3]);
+    }
+
+    /**
+     *
+     * @return Number of hunks reported by {@link DiffStrategies#AUTOMATIC} for two one char
+     * changes distance chars apart, in text of textLength chars.
+     */
+    private static int findAutomaticHunks(int textLength, int distance) {
+
+        final String oldText = createText(textLength);
+        final StringBuilder newText = new StringBuilder(oldText);
+
+        newText.setCharAt(1000, '#');
+        newText.setCharAt(1000 + distance, '#');
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(DiffStrategies.AUTOMATIC.findHunks(oldText, newText.toString(), hunks));
+
+        return hunks.size();
+
+    }
+
+    /**
+     *
+     * @return Text of length chars, in which no run of chars repeats nearby, so that each change
+     * is found at exactly the index it was made.
+     */
+    private static String createText(int length) {
+
+        final StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append(Integer.toString(i, 36)).append(' ');
+        }
+
+        builder.setLength(length);
+
+        return builder.toString();
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link DirtyRange} covers every char altered by a series of changes, and keeps the
+ * old chars within it.
+ *
+ * @author Tom Calver
+ */
+public class DirtyRangeTest {
+
+    @Test
+    public void singleChangeIsRange() {
+
+        final StringBuilder text = new StringBuilder("hello world");
+        final DirtyRange range = new DirtyRange(true);
+
+        replace(range, text, 6, 11, "you");
+
+        assertEquals(6, range.getStart());
+        assertEquals(11, range.getOldEnd());
+        assertEquals(9, range.getNewEnd());
+        assertEquals("world", range.getOldText());
+
+    }
+
+    @Test
+    public void changesEitherSideExtendRange() {
+
+        final StringBuilder text = new StringBuilder("one two three four");
+        final DirtyRange range = new DirtyRange(true);
+
+        replace(range, text, 4, 7, "2");
+        replace(range, text, 0, 3, "1");
+        replace(range, text, 10, 14, "4");
+
+        assertEquals("1 2 three 4", text.toString());
+        assertEquals(0, range.getStart());
+        assertEquals(18, range.getOldEnd());
+        assertEquals(11, range.getNewEnd());
+        assertEquals("one two three four", range.getOldText());
+
+    }
+
+    @Test
+    public void rangeCoversRandomChanges() {
+
+        final Random random = new Random(4);
+
+        for (int i = 0; i < 200; i++) {
+
+            final String oldText = "the quick brown fox jumps over the lazy dog";
+            final StringBuilder text = new StringBuilder(oldText);
+            final DirtyRange range = new DirtyRange(true);
+
+            for (int edits = random.nextInt(6); edits >= 0; edits--) {
+                final int start = random.nextInt(text.length() + 1);
+                final int end = Math.min(text.length(), start + random.nextInt(6));
+                replace(range, text, start, end, "xyz".substring(random.nextInt(4)));
+            }
+
+            final String newText = text.toString();
+            final int start = range.getStart();
+
+            //Everything outside the range is unchanged, and the range holds the old chars
+            assertEquals(oldText.substring(0, start), newText.substring(0, start));
+            assertEquals(oldText.substring(range.getOldEnd()),
+                    newText.substring(range.getNewEnd()));
+            assertEquals(oldText.substring(start, range.getOldEnd()), range.getOldText());
+
+        }
+
+    }
+
+    @Test
+    public void changesThatCancelOutAreEqual() {
+
+        final StringBuilder text = new StringBuilder("one two");
+        final DirtyRange range = new DirtyRange(true);
+
+        replace(range, text, 3, 3, "x");
+        assertFalse(range.isOldTextEqualTo(text));
+
+        replace(range, text, 3, 4, "");
+        assertTrue(range.isOldTextEqualTo(text));
+
+    }
+
+    @Test
+    public void boundsAreKeptWithoutOldText() {
+
+        final StringBuilder text = new StringBuilder("one two");
+        final DirtyRange range = new DirtyRange(false);
+
+        replace(range, text, 4, 7, "three");
+
+        assertEquals(4, range.getStart());
+        assertEquals(7, range.getOldEnd());
+        assertEquals(9, range.getNewEnd());
+        assertEquals("", range.getOldText());
+        assertFalse(range.isOldTextEqualTo("one two"));
+
+    }
+
+    @Test
+    public void clearEmptiesRange() {
+
+        final StringBuilder text = new StringBuilder("one two");
+        final DirtyRange range = new DirtyRange(true);
+
+        replace(range, text, 0, 3, "1");
+        range.clear();
+
+        assertTrue(range.isEmpty());
+        assertEquals("", range.getOldText());
+
+        replace(range, text, 2, 5, "");
+
+        assertEquals(2, range.getStart());
+        assertEquals("two", range.getOldText());
+
+    }
+
+    /**
+     * Adds the change to range, as {@link HistoryEngine#beforeTextChanged} would, then makes it.
+     */
+    private static void replace(
+            DirtyRange range, StringBuilder text, int start, int end, String replacement
+    ) {
+        range.add(text, start, end - start, replacement.length());
+        text.replace(start, end, replacement);
+    }
+
+}
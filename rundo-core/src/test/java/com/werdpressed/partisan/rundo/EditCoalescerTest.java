@@ -0,0 +1,189 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link History#TRACKING_MODE_COALESCE} merges each typing or deleting run into a
+ * single entry as it is made, without a timer, and begins a new entry whenever a run is broken.
+ *
+ * @author Tom Calver
+ */
+public class EditCoalescerTest {
+
+    //Long enough that no run is broken by a pause between changes made by the test
+    private static final long MAX_PAUSE_MILLIS = 60 * 1000;
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private HistoryEngine mEngine;
+
+    @Before
+    public void setUp() {
+
+        mText = new StringBuilderTarget("one");
+        mScheduler = new ManualScheduler();
+        mEngine = new HistoryEngine(mText, mScheduler, ManualScheduler.SAME_THREAD);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setTrackingMode(History.TRACKING_MODE_COALESCE);
+        mEngine.setTimerLength(MAX_PAUSE_MILLIS);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+    @Test
+    public void typingRunIsOneEntry() {
+
+        type(3, " two");
+
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+        redo(1);
+        assertEquals("one two", mText.toString());
+
+    }
+
+    @Test
+    public void backspaceRunIsOneEntry() {
+
+        for (int i = 3; i > 0; i--) {
+            mText.replace(i - 1, i, "");
+        }
+
+        assertEquals("", mText.toString());
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+    }
+
+    @Test
+    public void forwardDeleteRunIsOneEntry() {
+
+        mText.replace(0, 1, "");
+        mText.replace(0, 1, "");
+
+        assertEquals("e", mText.toString());
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+    }
+
+    @Test
+    public void changeElsewhereBeginsNewRun() {
+
+        type(3, " two");
+        type(0, "zero ");
+
+        assertEquals(2, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one two", mText.toString());
+
+    }
+
+    @Test
+    public void deletingAfterTypingBeginsNewRun() {
+
+        type(3, " two");
+        mText.replace(6, 7, "");
+        mText.replace(5, 6, "");
+
+        assertEquals("one t", mText.toString());
+        assertEquals(2, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one two", mText.toString());
+
+    }
+
+    @Test
+    public void typingAfterUndoBeginsNewRun() {
+
+        type(3, " two");
+        undo(1);
+        type(3, "s");
+
+        assertEquals("ones", mText.toString());
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+    }
+
+    @Test
+    public void pauseBeginsNewRun() {
+
+        mEngine.setTimerLength(0);
+
+        type(3, "ab");
+
+        assertEquals(2, mEngine.getHistorySize());
+
+    }
+
+    @Test
+    public void runEndsAtMaxLength() {
+
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i <= EditCoalescer.MAX_RUN_LENGTH; i++) {
+            text.append('a');
+        }
+
+        type(3, text.toString());
+
+        assertEquals(2, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals(3 + EditCoalescer.MAX_RUN_LENGTH, mText.length());
+
+    }
+
+    @Test
+    public void wordReplacedByKeyboardContinuesRun() {
+
+        type(3, " tw");
+
+        //As a keyboard with suggestions may do, the whole word is replaced to add one char
+        mText.replace(4, 6, "two");
+
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+    }
+
+    /**
+     * Types text one char at a time from index, without pausing long enough to end a run.
+     */
+    private void type(int index, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            mText.replace(index + i, index + i, text.substring(i, i + 1));
+        }
+        mScheduler.runPosted();
+    }
+
+    private void undo(int steps) {
+        mEngine.undo(steps);
+        mScheduler.runPosted();
+    }
+
+    private void redo(int steps) {
+        mEngine.redo(steps);
+        mScheduler.runPosted();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link GapBuffer} holds the same text as a {@link StringBuilder} given the same
+ * changes, wherever they are made.
+ *
+ * @author Tom Calver
+ */
+public class GapBufferTest {
+
+    @Test
+    public void replaceAtEachEnd() {
+
+        final GapBuffer buffer = new GapBuffer("two");
+
+        buffer.replace(0, 0, "one ");
+        buffer.replace(buffer.length(), buffer.length(), " three");
+        buffer.replace(4, 7, "2");
+
+        assertEquals("one 2 three", buffer.toString());
+        assertEquals(11, buffer.length());
+        assertEquals('2', buffer.charAt(4));
+        assertEquals("2 th", buffer.subSequence(4, 8).toString());
+        assertEquals("one", buffer.substring(0, 3));
+
+    }
+
+    @Test
+    public void insertionLongerThanGap() {
+
+        final GapBuffer buffer = new GapBuffer("ab");
+        final StringBuilder text = new StringBuilder(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            text.append((char) ('a' + (i % 26)));
+        }
+
+        buffer.replace(1, 1, text);
+
+        assertEquals("a" + text + "b", buffer.toString());
+
+    }
+
+    @Test
+    public void matchesStringBuilderAfterRandomChanges() {
+
+        final Random random = new Random(14);
+        final StringBuilder expected =
+                new StringBuilder("the quick brown fox jumps over the lazy dog");
+        final GapBuffer buffer = new GapBuffer(expected);
+
+        for (int i = 0; i < 2000; i++) {
+
+            final int start = random.nextInt(expected.length() + 1);
+            final int end = Math.min(expected.length(), start + random.nextInt(8));
+            final String replacement = "0123456789".substring(random.nextInt(11));
+
+            expected.replace(start, end, replacement);
+            buffer.replace(start, end, replacement);
+
+            final int index = random.nextInt(expected.length() + 1);
+
+            //Read either side of the gap, which is now at the end of the replacement
+            assertEquals(expected.substring(0, index), buffer.substring(0, index));
+            assertEquals(expected.substring(index), buffer.substring(index, buffer.length()));
+
+        }
+
+        assertEquals(expected.toString(), buffer.toString());
+
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void replacePastEndThrows() {
+        new GapBuffer("one").replace(2, 4, "");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void charAtPastEndThrows() {
+        new GapBuffer("one").charAt(3);
+    }
+
+}
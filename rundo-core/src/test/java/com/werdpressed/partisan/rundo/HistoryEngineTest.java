@@ -0,0 +1,186 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link HistoryEngine} over a {@link StringBuilderTarget} steps back and forth
+ * through history to exactly the text that was entered, in each tracking mode.
+ *
+ * @author Tom Calver
+ */
+public class HistoryEngineTest {
+
+    private static final int[] TRACKING_MODES = {
+            History.TRACKING_MODE_DOCUMENT,
+            History.TRACKING_MODE_RANGE,
+            History.TRACKING_MODE_COALESCE
+    };
+
+    private static final String INITIAL_TEXT = "one two three\nfour five";
+    private static final int EDIT_COUNT = 40;
+    private static final long SEED = 1025L;
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private HistoryEngine mEngine;
+
+    @Test
+    public void undoAllReturnsInitialText() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+            final String editedText = makeEdits(new Random(SEED));
+
+            mEngine.undo(mEngine.getHistoryIndex());
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, INITIAL_TEXT, mText.toString());
+
+            mEngine.redo(mEngine.getHistorySize() - mEngine.getHistoryIndex());
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, editedText, mText.toString());
+
+        }
+
+    }
+
+    @Test
+    public void undoAndRedoStepsRoundTrip() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+            makeEdits(new Random(SEED));
+
+            //Text at each index of history, found by undoing one entry at a time
+            final int historySize = mEngine.getHistorySize();
+            final List<String> texts = new ArrayList<>(historySize + 1);
+
+            for (int i = 0; i <= historySize; i++) {
+                texts.add(0, mText.toString());
+                if (i < historySize) undo(1);
+            }
+
+            assertEquals("Mode " + mode, INITIAL_TEXT, texts.get(0));
+
+            final Random random = new Random(SEED);
+
+            for (int i = 0; i < 50; i++) {
+
+                final int index = mEngine.getHistoryIndex();
+
+                if (random.nextBoolean() && index > 0) {
+                    final int steps = 1 + random.nextInt(index);
+                    undo(steps);
+                    assertEquals("Mode " + mode, index - steps, mEngine.getHistoryIndex());
+                } else if (index < historySize) {
+                    final int steps = 1 + random.nextInt(historySize - index);
+                    redo(steps);
+                    assertEquals("Mode " + mode, index + steps, mEngine.getHistoryIndex());
+                }
+
+                assertEquals("Mode " + mode,
+                        texts.get(mEngine.getHistoryIndex()), mText.toString());
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void singleEditIsOneEntry() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "2");
+            mEngine.commit();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, 1, mEngine.getHistorySize());
+
+            undo(1);
+            assertEquals("Mode " + mode, INITIAL_TEXT, mText.toString());
+
+            redo(1);
+            assertEquals("Mode " + mode, "one 2 three\nfour five", mText.toString());
+
+        }
+
+    }
+
+    private void setUp(int trackingMode) {
+
+        mText = new StringBuilderTarget(INITIAL_TEXT);
+        mScheduler = new ManualScheduler();
+        mEngine = new HistoryEngine(mText, mScheduler, ManualScheduler.SAME_THREAD);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setTrackingMode(trackingMode);
+        mEngine.setTimerLength(0);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+    /**
+     * Makes a series of insertions, deletions and replacements, some of which are committed
+     * together, and then commits the rest.
+     *
+     * @return Text after all edits
+     */
+    private String makeEdits(Random random) {
+
+        for (int i = 0; i < EDIT_COUNT; i++) {
+
+            final int length = mText.length();
+            final int start = random.nextInt(length + 1);
+            final int end = Math.min(length, start + random.nextInt(4));
+
+            mText.replace(start, end, createText(random, random.nextInt(5)));
+
+            if (random.nextBoolean()) mScheduler.runDelayed();
+
+        }
+
+        mEngine.commit();
+        mScheduler.runPosted();
+
+        return mText.toString();
+
+    }
+
+    private void undo(int steps) {
+        mEngine.undo(steps);
+        mScheduler.runPosted();
+    }
+
+    private void redo(int steps) {
+        mEngine.redo(steps);
+        mScheduler.runPosted();
+    }
+
+    private static String createText(Random random, int length) {
+
+        final String chars = "abc de\n";
+        final StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            builder.append(chars.charAt(random.nextInt(chars.length())));
+        }
+
+        return builder.toString();
+
+    }
+
+}
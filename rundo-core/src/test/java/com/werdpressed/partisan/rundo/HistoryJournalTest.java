@@ -0,0 +1,161 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that history written to a {@link HistoryJournal} is rebuilt in full once the journal is
+ * closed, including when a new engine opens the same file straight away.
+ *
+ * @author Tom Calver
+ */
+public class HistoryJournalTest {
+
+    private static final String INITIAL_TEXT = "one two three\nfour five";
+    private static final int EDIT_COUNT = 20;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = mFolder.newFile("history.journal");
+    }
+
+    @Test
+    public void replayRebuildsClosedJournal() {
+
+        final StringBuilderTarget text = new StringBuilderTarget(INITIAL_TEXT);
+        final ManualScheduler scheduler = new ManualScheduler();
+        final HistoryEngine engine = openEngine(text, scheduler);
+
+        makeEdits(engine, scheduler, text, new Random(7L));
+        final int historySize = engine.getHistorySize();
+        engine.pause();
+        engine.close();
+
+        final FixedSizeArrayDeque<SubtractStrings.Item> undoQueue =
+                new FixedSizeArrayDeque<>(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        final FixedSizeArrayDeque<SubtractStrings.Item> redoQueue =
+                new FixedSizeArrayDeque<>(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+
+        final int textLength = HistoryJournal.replay(mFile, undoQueue, redoQueue, new TextBuffer());
+
+        assertEquals(text.length(), textLength);
+        assertEquals(historySize, undoQueue.size());
+        assertEquals(0, redoQueue.size());
+
+    }
+
+    @Test
+    public void reopenedEngineRestoresHistory() {
+
+        final Random random = new Random(11L);
+
+        for (int i = 0; i < 50; i++) {
+
+            assertEquals(mFile.getName(), true, mFile.delete());
+
+            final StringBuilderTarget text = new StringBuilderTarget(INITIAL_TEXT);
+            final ManualScheduler scheduler = new ManualScheduler();
+            final HistoryEngine engine = openEngine(text, scheduler);
+
+            makeEdits(engine, scheduler, text, random);
+            final int historySize = engine.getHistorySize();
+            final String editedText = text.toString();
+            engine.pause();
+            engine.close();
+
+            //As when an Activity is recreated, the new engine reads the journal at once
+            final ManualScheduler reopenedScheduler = new ManualScheduler();
+            final HistoryEngine reopened = openEngine(text, reopenedScheduler);
+
+            assertEquals(historySize, reopened.getHistorySize());
+            assertEquals(historySize, reopened.getHistoryIndex());
+
+            reopened.undo(reopened.getHistoryIndex());
+            reopenedScheduler.runPosted();
+            assertEquals(INITIAL_TEXT, text.toString());
+
+            reopened.redo(reopened.getHistorySize());
+            reopenedScheduler.runPosted();
+            assertEquals(editedText, text.toString());
+
+            reopened.close();
+
+        }
+
+    }
+
+    @Test
+    public void reopenedEngineRestoresUndoneHistory() {
+
+        final StringBuilderTarget text = new StringBuilderTarget(INITIAL_TEXT);
+        final ManualScheduler scheduler = new ManualScheduler();
+        final HistoryEngine engine = openEngine(text, scheduler);
+
+        makeEdits(engine, scheduler, text, new Random(13L));
+        final int historySize = engine.getHistorySize();
+
+        engine.undo(2);
+        scheduler.runPosted();
+        engine.pause();
+        engine.close();
+
+        final HistoryEngine reopened = openEngine(text, new ManualScheduler());
+
+        assertEquals(historySize, reopened.getHistorySize());
+        assertEquals(historySize - 2, reopened.getHistoryIndex());
+
+        reopened.close();
+
+    }
+
+    private HistoryEngine openEngine(StringBuilderTarget text, ManualScheduler scheduler) {
+
+        final HistoryEngine engine =
+                new HistoryEngine(text, scheduler, ManualScheduler.SAME_THREAD);
+
+        engine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        engine.setTimerLength(0);
+        text.setHistoryEngine(engine);
+
+        engine.setHistoryJournal(mFile);
+        engine.resume();
+
+        return engine;
+
+    }
+
+    private static void makeEdits(
+            HistoryEngine engine,
+            ManualScheduler scheduler,
+            StringBuilderTarget text,
+            Random random
+    ) {
+
+        for (int i = 0; i < EDIT_COUNT; i++) {
+
+            final int length = text.length();
+            final int start = random.nextInt(length + 1);
+            final int end = Math.min(length, start + random.nextInt(4));
+
+            text.replace(start, end, Integer.toString(random.nextInt(1000)));
+            engine.commit();
+            scheduler.runPosted();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the engines of a {@link HistoryPool} share its memory budget, with entries removed
+ * from the engine whose history changed least recently first.
+ *
+ * @author Tom Calver
+ */
+public class HistoryPoolTest {
+
+    private ManualScheduler mScheduler;
+    private HistoryPool<String> mPool;
+
+    private StringBuilderTarget mFirstText, mSecondText;
+    private HistoryEngine mFirst, mSecond;
+
+    @Before
+    public void setUp() {
+
+        mScheduler = new ManualScheduler();
+        mPool = new HistoryPool<>(mScheduler, ManualScheduler.SAME_THREAD);
+
+        mFirstText = new StringBuilderTarget("one");
+        mFirst = add("first", mFirstText);
+
+        mSecondText = new StringBuilderTarget("one");
+        mSecond = add("second", mSecondText);
+
+    }
+
+    @Test
+    public void sizeIsSumOfEngines() {
+
+        append(mFirst, mFirstText, " two");
+        append(mSecond, mSecondText, " two");
+        append(mSecond, mSecondText, " three");
+
+        assertEquals(mFirst.getSizeInBytes() + mSecond.getSizeInBytes(), mPool.getSizeInBytes());
+        assertSame(mFirst, mPool.get("first"));
+
+    }
+
+    @Test
+    public void coldestEngineIsTrimmedFirst() {
+
+        append(mFirst, mFirstText, " two");
+        append(mFirst, mFirstText, " three");
+        append(mSecond, mSecondText, " two");
+        append(mSecond, mSecondText, " three");
+
+        //The second engine changed most recently, so only the first loses an entry
+        mPool.setMemoryBudget(mPool.getSizeInBytes() - 1);
+
+        assertEquals(1, mFirst.getEntryCount());
+        assertEquals(2, mSecond.getEntryCount());
+
+        //Changing the first engine makes the second the coldest
+        mPool.setMemoryBudget(HistoryPool.DEFAULT_MEMORY_BUDGET);
+        append(mFirst, mFirstText, " four");
+        mPool.setMemoryBudget(mPool.getSizeInBytes() - 1);
+
+        assertEquals(2, mFirst.getEntryCount());
+        assertEquals(1, mSecond.getEntryCount());
+
+    }
+
+    @Test
+    public void latestEntryIsKeptOverBudget() {
+
+        mPool.setMemoryBudget(1);
+
+        append(mFirst, mFirstText, " two");
+        append(mSecond, mSecondText, " two");
+        append(mSecond, mSecondText, " three");
+
+        assertEquals(0, mFirst.getEntryCount());
+        assertEquals(1, mSecond.getEntryCount());
+
+        undo(mSecond, 1);
+        assertEquals("one two", mSecondText.toString());
+
+    }
+
+    @Test
+    public void removedEngineIsNotCounted() {
+
+        append(mFirst, mFirstText, " two");
+        append(mSecond, mSecondText, " two");
+
+        final long secondSizeInBytes = mSecond.getSizeInBytes();
+
+        assertSame(mFirst, mPool.remove("first"));
+        assertNull(mPool.get("first"));
+        assertEquals(secondSizeInBytes, mPool.getSizeInBytes());
+
+        //Changes to the removed engine no longer trim the pool
+        mPool.setMemoryBudget(secondSizeInBytes);
+        append(mFirst, mFirstText, " three");
+
+        assertEquals(2, mFirst.getEntryCount());
+        assertEquals(1, mSecond.getEntryCount());
+
+    }
+
+    @Test
+    public void branchIsTrimmedBeforeHistory() {
+
+        append(mFirst, mFirstText, " two");
+        append(mFirst, mFirstText, " three");
+        undo(mFirst, 1);
+        append(mFirst, mFirstText, " four");
+
+        assertEquals(1, mFirst.getBranches().size());
+
+        append(mSecond, mSecondText, " two");
+        mPool.setMemoryBudget(mPool.getSizeInBytes() - 1);
+
+        //The abandoned " three" is removed, rather than " two" which can still be undone
+        assertEquals(0, mFirst.getBranches().size());
+        assertEquals(2, mFirst.getHistorySize());
+
+        undo(mFirst, 2);
+        assertEquals("one", mFirstText.toString());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKeyThrows() {
+        mPool.add("first", new StringBuilderTarget(""));
+    }
+
+    private HistoryEngine add(String key, StringBuilderTarget text) {
+
+        final HistoryEngine engine = mPool.add(key, text);
+
+        engine.setTimerLength(0);
+        text.setHistoryEngine(engine);
+
+        return engine;
+
+    }
+
+    private void append(HistoryEngine engine, StringBuilderTarget text, String append) {
+        text.replace(text.length(), text.length(), append);
+        engine.commit();
+        mScheduler.runPosted();
+    }
+
+    private void undo(HistoryEngine engine, int steps) {
+        engine.undo(steps);
+        mScheduler.runPosted();
+    }
+
+}
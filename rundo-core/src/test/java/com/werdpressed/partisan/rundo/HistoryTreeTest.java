@@ -0,0 +1,163 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that entries abandoned by typing after {@link History#undo()} are kept as branches of
+ * history, which {@link History#switchToBranch(HistoryBranch)} returns to, and that branches are
+ * discarded once they can no longer be reached.
+ *
+ * @author Tom Calver
+ */
+public class HistoryTreeTest {
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private HistoryEngine mEngine;
+
+    @Before
+    public void setUp() {
+
+        mText = new StringBuilderTarget("one");
+        mScheduler = new ManualScheduler();
+        mEngine = new HistoryEngine(mText, mScheduler, ManualScheduler.SAME_THREAD);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setTimerLength(0);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+    @Test
+    public void typingAfterUndoKeepsBranch() {
+
+        append(" two");
+        append(" three");
+        undo(1);
+        append(" four");
+
+        assertEquals("one two four", mText.toString());
+        assertEquals(2, mEngine.getHistorySize());
+
+        final List<HistoryBranch> branches = mEngine.getBranches();
+
+        assertEquals(1, branches.size());
+        assertEquals(1, branches.get(0).getForkIndex());
+        assertEquals(1, branches.get(0).getLength());
+
+    }
+
+    @Test
+    public void switchToBranchRestoresItsText() {
+
+        append(" two");
+        append(" three");
+        undo(2);
+        append(" four");
+
+        mEngine.switchToBranch(mEngine.getBranches().get(0));
+        mScheduler.runPosted();
+
+        assertEquals("one two three", mText.toString());
+        assertEquals(2, mEngine.getHistoryIndex());
+        assertEquals(2, mEngine.getHistorySize());
+
+        //The history switched away from is kept in its place
+        final List<HistoryBranch> branches = mEngine.getBranches();
+
+        assertEquals(1, branches.size());
+        assertEquals(0, branches.get(0).getForkIndex());
+
+        mEngine.switchToBranch(branches.get(0));
+        mScheduler.runPosted();
+
+        assertEquals("one four", mText.toString());
+
+        undo(1);
+        assertEquals("one", mText.toString());
+
+    }
+
+    @Test
+    public void nestedBranchIsReachable() {
+
+        append(" two");
+        append(" three");
+        undo(1);
+        append(" four");
+        append(" five");
+        undo(1);
+        append(" six");
+
+        final List<HistoryBranch> branches = mEngine.getBranches();
+
+        assertEquals(2, branches.size());
+
+        mEngine.switchToBranch(branches.get(1));
+        mScheduler.runPosted();
+
+        assertEquals("one two three", mText.toString());
+        assertEquals(2, mEngine.getBranches().size());
+
+    }
+
+    @Test
+    public void branchIsDiscardedOnceItsBaseIsEvicted() {
+
+        mEngine.setQueueSize(3);
+
+        append(" two");
+        append(" three");
+        undo(1);
+        append(" four");
+
+        assertEquals(1, mEngine.getBranches().size());
+        assertEquals(3, mEngine.getEntryCount());
+
+        //" two", which the branch leaves history after, is removed to make room
+        append(" five");
+        append(" six");
+
+        assertEquals(3, mEngine.getHistorySize());
+        assertEquals(0, mEngine.getBranches().size());
+        assertEquals(3, mEngine.getEntryCount());
+
+    }
+
+    @Test
+    public void branchFromStartIsDiscardedOnceFirstEntryIsEvicted() {
+
+        mEngine.setQueueSize(2);
+
+        append(" two");
+        undo(1);
+        append(" three");
+        append(" four");
+
+        assertEquals(1, mEngine.getBranches().size());
+
+        append(" five");
+
+        assertEquals(0, mEngine.getBranches().size());
+        assertEquals(2, mEngine.getEntryCount());
+
+    }
+
+    private void append(String text) {
+        mText.replace(mText.length(), mText.length(), text);
+        mEngine.commit();
+        mScheduler.runPosted();
+    }
+
+    private void undo(int steps) {
+        mEngine.undo(steps);
+        mScheduler.runPosted();
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Executor} for tests, which holds every comparison until it is run explicitly, so that
+ * calls made while a comparison is still in progress on the background thread can be tested.
+ *
+ * @author Tom Calver
+ */
+final class ManualExecutor implements Executor {
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+        mTasks.add(command);
+    }
+
+    /**
+     *
+     * @return Number of tasks waiting to be run.
+     */
+    int size() {
+        return mTasks.size();
+    }
+
+    /**
+     * Runs every waiting task in the order it was submitted, including any submitted in turn.
+     */
+    void runAll() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Scheduler} for tests, which holds every task until it is run explicitly, so that commits
+ * happen at known points rather than after a real countdown.
+ *
+ * @author Tom Calver
+ */
+final class ManualScheduler implements Scheduler {
+
+    /**
+     * Compares text immediately, on the thread that commits it.
+     */
+    static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<Runnable> mPosted = new ArrayList<>();
+    private final List<Runnable> mDelayed = new ArrayList<>();
+
+    @Override
+    public void post(Runnable task) {
+        mPosted.add(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        mDelayed.add(task);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        mDelayed.remove(task);
+    }
+
+    /**
+     * Runs every posted task, including any they post in turn.
+     */
+    void runPosted() {
+        while (!mPosted.isEmpty()) {
+            mPosted.remove(0).run();
+        }
+    }
+
+    /**
+     * Runs every delayed task as if its delay had passed, such as the countdown before a commit,
+     * followed by every posted task.
+     */
+    void runDelayed() {
+
+        final List<Runnable> delayed = new ArrayList<>(mDelayed);
+        mDelayed.clear();
+
+        for (Runnable task : delayed) {
+            task.run();
+        }
+
+        runPosted();
+
+    }
+
+}
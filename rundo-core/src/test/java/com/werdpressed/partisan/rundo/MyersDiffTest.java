@@ -0,0 +1,135 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link MyersDiff} reports each separate change as its own hunk, and that the hunks
+ * it reports always turn old text into new.
+ *
+ * @author Tom Calver
+ */
+public class MyersDiffTest {
+
+    @Test
+    public void separateChangesAreSeparateHunks() {
+
+        final String oldText = "the quick brown fox jumps over the lazy dog";
+        final String newText = "the slow brown fox jumps over the lazy cat";
+
+        final RecordingHunks hunks = findHunks(oldText, newText);
+
+        //"the " is shorter than MIN_MATCH_LENGTH, so is stored with the first change
+        assertEquals(2, hunks.size());
+        assertArrayEquals(new int[] {0, 9, 0, 8}, hunks.get(0));
+        assertArrayEquals(new int[] {40, 43, 39, 42}, hunks.get(1));
+
+    }
+
+    @Test
+    public void shortUnchangedRunIsPartOfHunk() {
+
+        //" brown " is shorter than MIN_MATCH_LENGTH, so is stored with the changes either side
+        final String oldText = "the quick brown fox jumps over the lazy dog";
+        final String newText = "the slow brown cat jumps over the lazy dog";
+
+        final RecordingHunks hunks = findHunks(oldText, newText);
+
+        assertEquals(1, hunks.size());
+        assertArrayEquals(new int[] {0, 19, 0, 18}, hunks.get(0));
+
+    }
+
+    @Test
+    public void insertionAndDeletionAreFound() {
+
+        final String oldText = "unchanged first removed unchanged second unchanged third";
+        final String newText = "unchanged first unchanged second inserted unchanged third";
+
+        final RecordingHunks hunks = findHunks(oldText, newText);
+
+        //Each change could be placed at more than one index among repeated chars, so only their
+        //lengths are checked
+        assertEquals(2, hunks.size());
+        assertHunkLengths(8, 0, hunks.get(0));
+        assertHunkLengths(0, 9, hunks.get(1));
+
+    }
+
+    @Test
+    public void hunksTurnOldTextIntoNew() {
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+
+            final String oldText = createText(random, random.nextInt(200));
+            final StringBuilder newText = new StringBuilder(oldText);
+
+            for (int edits = random.nextInt(5); edits >= 0; edits--) {
+                final int start = random.nextInt(newText.length() + 1);
+                final int end = Math.min(newText.length(), start + random.nextInt(10));
+                newText.replace(start, end, createText(random, random.nextInt(10)));
+            }
+
+            final RecordingHunks hunks = findHunks(oldText, newText);
+
+            assertEquals(newText.toString(), hunks.apply(oldText, newText));
+
+        }
+
+    }
+
+    @Test
+    public void nothingIsReportedOverBudget() {
+
+        final String oldText = "the quick brown fox jumps over the lazy dog";
+        final String newText = "the slow brown fox jumps over the lazy cat";
+        final RecordingHunks hunks = new RecordingHunks(true);
+
+        assertFalse(new MyersDiff(oldText, newText, hunks)
+                .findHunks(0, oldText.length(), newText.length()));
+        assertEquals(0, hunks.size());
+
+    }
+
+    private static void assertHunkLengths(int oldLength, int newLength, int[] hunk) {
+        assertEquals(oldLength, hunk[1] - hunk[0]);
+        assertEquals(newLength, hunk[3] - hunk[2]);
+    }
+
+    private static RecordingHunks findHunks(CharSequence oldText, CharSequence newText) {
+
+        final RecordingHunks hunks = new RecordingHunks(false);
+
+        assertTrue(new MyersDiff(oldText, newText, hunks)
+                .findHunks(0, oldText.length(), newText.length()));
+
+        return hunks;
+
+    }
+
+    /**
+     *
+     * @return Text of length chars from a small alphabet, so that unchanged runs of every length
+     * occur.
+     */
+    private static String createText(Random random, int length) {
+
+        final char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = "ab c\n".charAt(random.nextInt(5));
+        }
+
+        return new String(chars);
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link PendingDiff} can be cancelled before or during its comparison, that a
+ * cancelled commit merged into the next one produces a single entry covering both, and that a
+ * failed comparison still produces an entry.
+ *
+ * @author Tom Calver
+ */
+public class PendingDiffTest {
+
+    private static final String INITIAL_TEXT = "one two three";
+
+    @Test
+    public void itemIsComparedOnce() {
+
+        final PendingDiff pending = createPendingDiff(DiffStrategies.AUTOMATIC);
+        final SubtractStrings.Item item = pending.getItem();
+
+        assertSame(item, pending.getItem());
+        assertEquals(SubtractStrings.REPLACEMENT, item.getDeviationType());
+
+        //Already complete, so is kept
+        assertFalse(pending.cancel());
+        assertSame(item, pending.getItem());
+
+    }
+
+    @Test
+    public void cancelledBeforeComparisonHasNoItem() {
+
+        final PendingDiff pending = createPendingDiff(DiffStrategies.AUTOMATIC);
+
+        assertTrue(pending.cancel());
+        assertFalse(pending.cancel());
+        assertNull(pending.getItem());
+
+    }
+
+    @Test
+    public void cancelledDuringComparisonHasNoItem() {
+
+        final PendingDiff[] pending = new PendingDiff[1];
+
+        pending[0] = createPendingDiff(new DiffStrategy() {
+            @Override
+            public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+                //As a newer commit would from the main thread, part way through
+                pending[0].cancel();
+                return !hunks.isOverBudget();
+            }
+        });
+
+        assertNull(pending[0].getItem());
+
+    }
+
+    @Test
+    public void failedComparisonReplacesWholeText() {
+
+        final DiffStrategy throwing = new DiffStrategy() {
+            @Override
+            public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+                throw new IllegalStateException();
+            }
+        };
+
+        final DiffStrategy givingUp = new DiffStrategy() {
+            @Override
+            public boolean findHunks(CharSequence oldText, CharSequence newText, Hunks hunks) {
+                return false;
+            }
+        };
+
+        for (DiffStrategy strategy : new DiffStrategy[] { throwing, givingUp }) {
+
+            final SubtractStrings.Item item = createPendingDiff(strategy).getItem();
+
+            assertEquals(SubtractStrings.REPLACEMENT, item.getDeviationType());
+            assertEquals("two", item.getReplacedText().toString());
+            assertEquals("2", item.getAlteredText().toString());
+
+        }
+
+    }
+
+    @Test
+    public void mergedCommitsUndoTogether() {
+
+        final Random random = new Random(24);
+
+        for (int i = 0; i < 200; i++) {
+
+            final StringBuilder text = new StringBuilder(INITIAL_TEXT);
+
+            final PendingDiff older = replace(random, text);
+            final String middleText = text.toString();
+            final PendingDiff newer = replace(random, text);
+
+            assertTrue(older.cancel());
+            newer.mergeAfter(older, text);
+
+            final SubtractStrings.Item item = newer.getItem();
+            final StringBuilderTarget target = new StringBuilderTarget(text);
+
+            item.undo(target);
+            assertEquals("After " + middleText, INITIAL_TEXT, target.toString());
+
+            item.redo(target);
+            assertEquals(text.toString(), target.toString());
+
+        }
+
+    }
+
+    @Test
+    public void commitCapturedWhilePendingIsMerged() {
+
+        final StringBuilderTarget text = new StringBuilderTarget(INITIAL_TEXT);
+        final ManualScheduler scheduler = new ManualScheduler();
+        final ManualExecutor executor = new ManualExecutor();
+        final HistoryEngine engine = new HistoryEngine(text, scheduler, executor);
+
+        engine.setTimerLength(0);
+        text.setHistoryEngine(engine);
+
+        text.replace(4, 7, "2");
+        scheduler.runDelayed();
+        text.replace(6, 11, "3");
+        scheduler.runDelayed();
+
+        //The first task finds its commit cancelled, and the second compares both
+        executor.runAll();
+        scheduler.runPosted();
+
+        assertEquals(1, engine.getHistorySize());
+
+        engine.undo();
+        scheduler.runPosted();
+
+        assertEquals(INITIAL_TEXT, text.toString());
+
+    }
+
+    @Test
+    public void completedCommitIsNotMerged() {
+
+        final StringBuilderTarget text = new StringBuilderTarget(INITIAL_TEXT);
+        final ManualScheduler scheduler = new ManualScheduler();
+        final ManualExecutor executor = new ManualExecutor();
+        final HistoryEngine engine = new HistoryEngine(text, scheduler, executor);
+
+        engine.setTimerLength(0);
+        text.setHistoryEngine(engine);
+
+        text.replace(4, 7, "2");
+        scheduler.runDelayed();
+        executor.runAll();
+
+        //Compared, but not yet added to the undo queue on the main thread
+        text.replace(6, 11, "3");
+        scheduler.runDelayed();
+        executor.runAll();
+        scheduler.runPosted();
+
+        assertEquals(2, engine.getHistorySize());
+
+        engine.undo();
+        scheduler.runPosted();
+
+        assertEquals("one 2 three", text.toString());
+
+    }
+
+    private static PendingDiff createPendingDiff(DiffStrategy strategy) {
+        return new PendingDiff("two", "2", 4, strategy, History.DEFAULT_DIFF_TIME_BUDGET);
+    }
+
+    /**
+     * Makes a random replacement in text.
+     *
+     * @return Commit of the replacement, not yet compared
+     */
+    private static PendingDiff replace(Random random, StringBuilder text) {
+
+        final int start = random.nextInt(text.length() + 1);
+        final int end = Math.min(text.length(), start + random.nextInt(5));
+        final String replacement = "xyz".substring(random.nextInt(4));
+
+        final PendingDiff pending = new PendingDiff(text.substring(start, end), replacement, start,
+                DiffStrategies.AUTOMATIC, History.DEFAULT_DIFF_TIME_BUDGET);
+
+        text.replace(start, end, replacement);
+
+        return pending;
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.werdpressed.partisan.rundo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DiffStrategy.Hunks} for tests, which keeps every hunk it is given, and is either always
+ * or never over budget.
+ *
+ * @author Tom Calver
+ */
+final class RecordingHunks implements DiffStrategy.Hunks {
+
+    private final List<int[]> mHunks = new ArrayList<>();
+    private final boolean isOverBudget;
+
+    RecordingHunks(boolean isOverBudget) {
+        this.isOverBudget = isOverBudget;
+    }
+
+    @Override
+    public void add(int oldStart, int oldEnd, int newStart, int newEnd) {
+        mHunks.add(new int[] {oldStart, oldEnd, newStart, newEnd});
+    }
+
+    @Override
+    public boolean isOverBudget() {
+        return isOverBudget;
+    }
+
+    /**
+     *
+     * @return Number of hunks added.
+     */
+    int size() {
+        return mHunks.size();
+    }
+
+    /**
+     *
+     * @return Old start, old end, new start and new end of the hunk at index.
+     */
+    int[] get(int index) {
+        return mHunks.get(index);
+    }
+
+    /**
+     *
+     * @return Old text with each hunk replaced by its new text, which equals new text if the hunks
+     * are complete, and in order.
+     */
+    String apply(CharSequence oldText, CharSequence newText) {
+
+        final StringBuilder builder = new StringBuilder();
+        int oldIndex = 0;
+
+        for (int[] hunk : mHunks) {
+            builder.append(oldText, oldIndex, hunk[0]).append(newText, hunk[2], hunk[3]);
+            oldIndex = hunk[1];
+        }
+
+        return builder.append(oldText, oldIndex, oldText.length()).toString();
+
+    }
+
+}
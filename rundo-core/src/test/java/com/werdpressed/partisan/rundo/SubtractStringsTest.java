@@ -0,0 +1,103 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link SubtractStrings} against results recorded from the original implementation, which
+ * reversed and copied both texts as char arrays, so that in place scanning finds the same
+ * deviations.
+ *
+ * @author Tom Calver
+ */
+public class SubtractStringsTest {
+
+    /**
+     * Old text, new text, first deviation, last deviation in old text, last deviation in new
+     * text, deviation type, replaced text and altered text.
+     */
+    private static final Object[][] CASES = {
+            {"one", "one one", 3, 3, 7, SubtractStrings.ADDITION, "", " one"},
+            {"one one", "one", 3, 7, 3, SubtractStrings.DELETION, " one", ""},
+            {"one", "two", 0, 3, 3, SubtractStrings.REPLACEMENT, "one", "two"},
+            {"abc", "abc", 0, 0, 0, SubtractStrings.UNCHANGED, "", ""},
+            {"hello world", "hello brave world", 6, 6, 12, SubtractStrings.ADDITION,
+                    "", "brave "},
+            {"hello brave world", "hello world", 6, 17, 11, SubtractStrings.REPLACEMENT,
+                    "brave world", "world"},
+            {"aa", "aa aa", 2, 2, 5, SubtractStrings.ADDITION, "", " aa"},
+            {"abcdef", "abXYef", 2, 6, 6, SubtractStrings.REPLACEMENT, "cdef", "XYef"},
+            {"the cat", "the cat sat", 7, 7, 11, SubtractStrings.ADDITION, "", " sat"},
+            {"x the cat", "the cat", 0, 9, 7, SubtractStrings.REPLACEMENT,
+                    "x the cat", "the cat"},
+            {"aaaa", "aaa", 3, 4, 3, SubtractStrings.DELETION, "a", ""},
+            {"abab", "ababab", 4, 4, 6, SubtractStrings.ADDITION, "", "ab"},
+            {"line one\nline two", "line one\nline 2\nline two", 14, 17, 24,
+                    SubtractStrings.REPLACEMENT, "two", "2\nline two"},
+            {"Hello", "hello", 0, 5, 5, SubtractStrings.REPLACEMENT, "Hello", "hello"},
+            {"a", "ab", 1, 1, 2, SubtractStrings.ADDITION, "", "b"},
+            {"ab", "a", 1, 2, 1, SubtractStrings.DELETION, "b", ""},
+            {"abc", "xabc", 0, 3, 4, SubtractStrings.REPLACEMENT, "abc", "xabc"},
+            {"mississippi", "missisippi", 6, 11, 10, SubtractStrings.REPLACEMENT,
+                    "sippi", "ippi"},
+            {"banana", "bananana", 6, 6, 8, SubtractStrings.ADDITION, "", "na"}
+    };
+
+    @Test
+    public void matchesOriginalImplementation() {
+
+        for (Object[] testCase : CASES) {
+
+            final String message = testCase[0] + " -> " + testCase[1];
+            final SubtractStrings.Item item =
+                    new SubtractStrings((String) testCase[0], (String) testCase[1]).getItem();
+
+            assertEquals(message, testCase[2], item.getFirstDeviation());
+            assertEquals(message, testCase[3], item.getLastDeviationOldText());
+            assertEquals(message, testCase[4], item.getLastDeviationNewText());
+            assertEquals(message, testCase[5], item.getDeviationType());
+            assertEquals(message, testCase[6], item.getReplacedText().toString());
+            assertEquals(message, testCase[7], item.getAlteredText().toString());
+
+        }
+
+    }
+
+    /**
+     * Long enough that common prefixes and suffixes are compared a block at a time, where the
+     * runtime allows.
+     */
+    @Test
+    public void matchesOriginalImplementationForLongText() {
+
+        final StringBuilder builder = new StringBuilder();
+
+        while (builder.length() < 100000) {
+            builder.append("the quick brown fox ");
+        }
+
+        final String oldText = builder.toString();
+        final String added = new StringBuilder(oldText).insert(50003, "jumps ").toString();
+        final String replaced = new StringBuilder(oldText).replace(70000, 70005, "lazy dog")
+                .toString();
+
+        assertItem(new SubtractStrings(oldText, added).getItem(), 50003, 100000, 100006);
+        assertItem(new SubtractStrings(added, oldText).getItem(), 50003, 100006, 100000);
+        assertItem(new SubtractStrings(oldText, replaced).getItem(), 70000, 100000, 100003);
+
+    }
+
+    private static void assertItem(
+            SubtractStrings.Item item,
+            int firstDeviation,
+            int lastDeviationOldText,
+            int lastDeviationNewText
+    ) {
+        assertEquals(firstDeviation, item.getFirstDeviation());
+        assertEquals(lastDeviationOldText, item.getLastDeviationOldText());
+        assertEquals(lastDeviationNewText, item.getLastDeviationNewText());
+        assertEquals(SubtractStrings.REPLACEMENT, item.getDeviationType());
+    }
+
+}
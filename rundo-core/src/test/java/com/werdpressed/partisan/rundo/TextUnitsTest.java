@@ -0,0 +1,158 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link History#GRANULARITY_WORD} and {@link History#GRANULARITY_LINE} commit as
+ * each word or line is completed, and step through pasted or deleted text one word or line at a
+ * time.
+ *
+ * @author Tom Calver
+ */
+public class TextUnitsTest {
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private HistoryEngine mEngine;
+
+    @Test
+    public void unitEndsAfterFirstBoundary() {
+
+        assertTrue(TextUnits.isUnitEnded("one ", 3, 1, History.GRANULARITY_WORD));
+        assertFalse(TextUnits.isUnitEnded("one  ", 4, 1, History.GRANULARITY_WORD));
+        assertFalse(TextUnits.isUnitEnded("one ", 2, 1, History.GRANULARITY_WORD));
+
+        assertFalse(TextUnits.isUnitEnded("one ", 3, 1, History.GRANULARITY_LINE));
+        assertTrue(TextUnits.isUnitEnded("one\n", 3, 1, History.GRANULARITY_LINE));
+
+        assertFalse(TextUnits.isUnitEnded("one ", 3, 1, History.GRANULARITY_TIMER));
+
+    }
+
+    @Test
+    public void typedWordIsCommittedWithoutTimer() {
+
+        setUp("", History.GRANULARITY_WORD);
+
+        type("one two");
+
+        //Only the space ends a word, so "two" is still waiting for the timer
+        assertEquals(1, mEngine.getHistorySize());
+
+        mEngine.commit();
+        mScheduler.runPosted();
+
+        assertEquals(2, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one ", mText.toString());
+
+        undo(1);
+        assertEquals("", mText.toString());
+
+    }
+
+    @Test
+    public void pastedTextIsOneEntryPerWord() {
+
+        setUp("zero", History.GRANULARITY_WORD);
+
+        replace(4, 4, " one two three");
+
+        //The leading space has no word before it, so is part of the first unit
+        assertEquals(3, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("zero one two ", mText.toString());
+
+        undo(1);
+        assertEquals("zero one ", mText.toString());
+
+        undo(1);
+        assertEquals("zero", mText.toString());
+
+        redo(3);
+        assertEquals("zero one two three", mText.toString());
+
+    }
+
+    @Test
+    public void deletedTextIsRestoredOneLineAtATime() {
+
+        setUp("one\ntwo\nthree\n", History.GRANULARITY_LINE);
+
+        replace(0, 14, "");
+
+        assertEquals(3, mEngine.getHistorySize());
+
+        //Deleted as if by backspace, so the first line is the last to be removed
+        undo(1);
+        assertEquals("one\n", mText.toString());
+
+        undo(1);
+        assertEquals("one\ntwo\n", mText.toString());
+
+        undo(1);
+        assertEquals("one\ntwo\nthree\n", mText.toString());
+
+    }
+
+    @Test
+    public void replacementIsNeverSplit() {
+
+        setUp("one two three", History.GRANULARITY_WORD);
+
+        replace(4, 7, "2 and 3");
+
+        assertEquals(1, mEngine.getHistorySize());
+
+        undo(1);
+        assertEquals("one two three", mText.toString());
+
+    }
+
+    private void setUp(String text, int granularity) {
+
+        mText = new StringBuilderTarget(text);
+        mScheduler = new ManualScheduler();
+        mEngine = new HistoryEngine(mText, mScheduler, ManualScheduler.SAME_THREAD);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setHistoryGranularity(granularity);
+        mEngine.setTimerLength(0);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+    /**
+     * Types text at the end, one char at a time, without the timer completing.
+     */
+    private void type(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            mText.replace(mText.length(), mText.length(), text.substring(i, i + 1));
+            mScheduler.runPosted();
+        }
+    }
+
+    private void replace(int start, int end, String text) {
+        mText.replace(start, end, text);
+        mEngine.commit();
+        mScheduler.runPosted();
+    }
+
+    private void undo(int steps) {
+        mEngine.undo(steps);
+        mScheduler.runPosted();
+    }
+
+    private void redo(int steps) {
+        mEngine.redo(steps);
+        mScheduler.runPosted();
+    }
+
+}
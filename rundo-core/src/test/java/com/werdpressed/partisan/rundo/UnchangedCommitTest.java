@@ -0,0 +1,131 @@
+package com.werdpressed.partisan.rundo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that commits whose changes cancel each other out are dropped before any text is
+ * compared, and that tracking continues normally after them.
+ *
+ * @author Tom Calver
+ */
+public class UnchangedCommitTest {
+
+    private static final int[] TRACKING_MODES = {
+            History.TRACKING_MODE_DOCUMENT,
+            History.TRACKING_MODE_RANGE
+    };
+
+    private static final String INITIAL_TEXT = "one two three";
+
+    private StringBuilderTarget mText;
+    private ManualScheduler mScheduler;
+    private ManualExecutor mExecutor;
+    private HistoryEngine mEngine;
+
+    @Test
+    public void typedThenDeletedTextIsDropped() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(3, 3, " and");
+            mText.replace(3, 7, "");
+            commit();
+
+            assertEquals("Mode " + mode, 0, mExecutor.size());
+            assertEquals("Mode " + mode, 0, mEngine.getHistorySize());
+
+        }
+
+    }
+
+    @Test
+    public void textReplacedWithItselfIsDropped() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "2");
+            mText.replace(4, 5, "two");
+            commit();
+
+            assertEquals("Mode " + mode, 0, mExecutor.size());
+            assertEquals("Mode " + mode, 0, mEngine.getHistorySize());
+
+        }
+
+    }
+
+    @Test
+    public void changeOfSameLengthIsCompared() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(4, 7, "owt");
+            commit();
+
+            assertEquals("Mode " + mode, 1, mExecutor.size());
+
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, 1, mEngine.getHistorySize());
+
+        }
+
+    }
+
+    @Test
+    public void changesAfterDroppedCommitAreTracked() {
+
+        for (int mode : TRACKING_MODES) {
+
+            setUp(mode);
+
+            mText.replace(0, 0, "zero ");
+            mText.replace(0, 5, "");
+            commit();
+
+            mText.replace(8, 13, "3");
+            commit();
+            mExecutor.runAll();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, 1, mEngine.getHistorySize());
+
+            mEngine.undo();
+            mScheduler.runPosted();
+
+            assertEquals("Mode " + mode, INITIAL_TEXT, mText.toString());
+
+        }
+
+    }
+
+    private void setUp(int trackingMode) {
+
+        mText = new StringBuilderTarget(INITIAL_TEXT);
+        mScheduler = new ManualScheduler();
+        mExecutor = new ManualExecutor();
+        mEngine = new HistoryEngine(mText, mScheduler, mExecutor);
+
+        mEngine.setQueueSize(FixedSizeArrayDeque.UNBOUNDED_SIZE);
+        mEngine.setTrackingMode(trackingMode);
+        mEngine.setTimerLength(0);
+
+        mText.setHistoryEngine(mEngine);
+
+    }
+
+    private void commit() {
+        mEngine.commit();
+        mScheduler.runPosted();
+    }
+
+}
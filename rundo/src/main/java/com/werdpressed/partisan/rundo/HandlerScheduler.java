@@ -0,0 +1,51 @@
+package com.werdpressed.partisan.rundo;
+
+import android.os.Handler;
+
+/**
+ * {@link Scheduler} which posts to a {@link Handler}, and so runs tasks on the thread of the
+ * Handler's Looper.
+ *
+ * @author Tom Calver
+ */
+final class HandlerScheduler implements Scheduler {
+
+    private static final ThreadLocal<Scheduler> SHARED_SCHEDULER = new ThreadLocal<Scheduler>() {
+        @Override
+        protected Scheduler initialValue() {
+            return new DeadlineScheduler(new HandlerScheduler(new Handler()));
+        }
+    };
+
+    private final Handler mHandler;
+
+    HandlerScheduler(Handler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     *
+     * @return {@link DeadlineScheduler} shared by every instance created on the calling thread,
+     * which posts to a Handler for that thread. Countdowns of all fields then share a single
+     * message, rather than posting one for each char typed.
+     */
+    static Scheduler getShared() {
+        return SHARED_SCHEDULER.get();
+    }
+
+    @Override
+    public void post(Runnable task) {
+        mHandler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        mHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.werdpressed.partisan.rundo;
+
+import android.os.Parcel;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes and reads sequences of {@link SubtractStrings.Item} to and from a {@link Parcel}, in the
+ * compact form produced by {@link ItemCodec}. Offsets of all Items are written as a single byte
+ * array, and all text as a single, shared String.
+ *
+ * @author Tom Calver
+ */
+final class ItemParcelUtils {
+
+    /**
+     * Max number of chars written by {@link #writeItems(Parcel, Iterable)}, which keeps saved
+     * state comfortably within the Binder transaction limit. Items after this limit is reached
+     * are not written.
+     */
+    static final int MAX_PARCELLED_CHARS = 64 * 1024;
+
+    private ItemParcelUtils() { throw new AssertionError(); }
+
+    /**
+     * Writes each {@link SubtractStrings.Item} in items, in iteration order, until
+     * {@link #MAX_PARCELLED_CHARS} is reached. Elements of any other type are skipped.
+     *
+     * @param dest Parcel to write to
+     * @param items Items to write
+     */
+    static void writeItems(Parcel dest, Iterable<?> items) {
+        writeItems(dest, items, MAX_PARCELLED_CHARS);
+    }
+
+    /**
+     * Writes each {@link SubtractStrings.Item} in items, in iteration order, until maxChars is
+     * reached. Elements of any other type are skipped.
+     *
+     * @param dest Parcel to write to
+     * @param items Items to write
+     * @param maxChars Max number of chars to write
+     */
+    static void writeItems(Parcel dest, Iterable<?> items, int maxChars) {
+
+        final ByteArrayOutputStream offsets = new ByteArrayOutputStream();
+        final StringBuilder text = new StringBuilder();
+        int count = 0;
+
+        for (Object element : items) {
+
+            if (!(element instanceof SubtractStrings.Item)) continue;
+
+            final SubtractStrings.Item item = (SubtractStrings.Item) element;
+
+            if (text.length() + item.getTextLength() > maxChars) break;
+
+            ItemCodec.writeItem(offsets, text, item);
+            count++;
+
+        }
+
+        dest.writeInt(count);
+        dest.writeByteArray(offsets.toByteArray());
+        dest.writeString(text.toString());
+
+    }
+
+    /**
+     *
+     * @param in Parcel previously written to with {@link #writeItems(Parcel, Iterable, int)}
+     * @return Items, in the order they were written.
+     */
+    static List<SubtractStrings.Item> readItems(Parcel in) {
+
+        final int count = in.readInt();
+        final ByteBuffer offsets = ByteBuffer.wrap(in.createByteArray());
+        final CharBuffer text = CharBuffer.wrap(in.readString());
+
+        final List<SubtractStrings.Item> items = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            items.add(ItemCodec.readItem(offsets, text));
+        }
+
+        return items;
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.werdpressed.partisan.rundo;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Wraps a {@link FixedSizeArrayDeque} of {@link SubtractStrings.Item} so it can be saved to a
+ * {@link android.os.Bundle}, as the deque itself has no Android dependency.
+ *
+ * @author Tom Calver
+ */
+final class ParcelableQueue implements Parcelable {
+
+    private final FixedSizeArrayDeque<SubtractStrings.Item> mQueue;
+    private final int maxParcelledChars;
+
+    ParcelableQueue(FixedSizeArrayDeque<SubtractStrings.Item> queue) {
+        this(queue, ItemParcelUtils.MAX_PARCELLED_CHARS);
+    }
+
+    /**
+     *
+     * @param queue Queue to write
+     * @param maxParcelledChars Max number of chars written, for when several queues are saved
+     *                          to the same state
+     */
+    ParcelableQueue(FixedSizeArrayDeque<SubtractStrings.Item> queue, int maxParcelledChars) {
+        mQueue = queue;
+        this.maxParcelledChars = maxParcelledChars;
+    }
+
+    private ParcelableQueue(Parcel in) {
+        maxParcelledChars = ItemParcelUtils.MAX_PARCELLED_CHARS;
+        final int maxSize = in.readInt();
+        final long maxSizeInBytes = in.readLong();
+        mQueue = new FixedSizeArrayDeque<>(maxSize, maxSizeInBytes);
+        for (SubtractStrings.Item item : ItemParcelUtils.readItems(in)) {
+            mQueue.addLast(item);
+        }
+    }
+
+    public static final Creator<ParcelableQueue> CREATOR = new Creator<ParcelableQueue>() {
+        @Override
+        public ParcelableQueue createFromParcel(Parcel in) {
+            return new ParcelableQueue(in);
+        }
+
+        @Override
+        public ParcelableQueue[] newArray(int size) {
+            return new ParcelableQueue[size];
+        }
+    };
+
+    FixedSizeArrayDeque<SubtractStrings.Item> getQueue() {
+        return mQueue;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * Items are written from first to last, up to the max number of chars passed to the
+     * constructor. Items nearest the last are therefore the first to be omitted from very large
+     * queues.
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(mQueue.getMaxSize());
+        dest.writeLong(mQueue.getMaxSizeInBytes());
+        ItemParcelUtils.writeItems(dest, mQueue, maxParcelledChars);
+    }
+
+}
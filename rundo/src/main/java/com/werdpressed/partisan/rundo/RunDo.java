@@ -13,7 +13,7 @@ import android.widget.EditText;
  *
  * @author Tom Calver
  */
-public interface RunDo extends TextWatcher, WriteToArrayDeque {
+public interface RunDo extends History, TextWatcher {
 
     String TAG = "RunDo";
 
@@ -22,44 +22,6 @@ public interface RunDo extends TextWatcher, WriteToArrayDeque {
     String OLD_TEXT_TAG = "old_text";
     String CONFIG_CHANGE_TAG = "return_from_config_change";
 
-    int DEFAULT_QUEUE_SIZE = 10;
-    int DEFAULT_TIMER_LENGTH = 2000;
-
-    int TRACKING_STARTED = 12;
-    int TRACKING_CURRENT = TRACKING_STARTED + 1;
-    int TRACKING_ENDED = TRACKING_CURRENT + 1;
-
-    /**
-     * Sets size of Undo and Redo queues. Default size is {@value #DEFAULT_QUEUE_SIZE}.
-     * Calling this clears any elements already in the queues.
-     * @param size New queue size
-     */
-    void setQueueSize(int size);
-
-    /**
-     * Sets time in milliseconds before text is committed to the undo queue. This timer begins
-     * immediately after text entry stops, and is reset if text changes before the timer can
-     * complete. Default value is {@value #DEFAULT_TIMER_LENGTH}.
-     * @param lengthInMillis Time in milliseconds before text is committed to undo queue
-     */
-    void setTimerLength(long lengthInMillis);
-
-    /**
-     * Updates attached {@link EditText} with text from the last entry in the undo queue, such that
-     * it reverts to an earlier state.
-     */
-    void undo();
-
-    /**
-     * Reverts changes made by the last {@link #undo()} call.
-     */
-    void redo();
-
-    /**
-     * Removes all entries from both undo and redo queues.
-     */
-    void clearAllQueues();
-
     /**
      * Used by{@link RunDo} implementations to establish a link with an {@link EditText}
      */
@@ -77,17 +39,7 @@ public interface RunDo extends TextWatcher, WriteToArrayDeque {
     /**
      * Implement to receive callbacks whenever {@link #undo()} or {@link #redo()} methods are called
      */
-    interface Callbacks {
-
-        /**
-         * {@link #undo()} called
-         */
-        void undoCalled();
-
-        /**
-         * {@link #redo()} called
-         */
-        void redoCalled();
+    interface Callbacks extends History.Callbacks {
 
     }
 
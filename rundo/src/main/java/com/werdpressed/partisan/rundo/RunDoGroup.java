@@ -0,0 +1,94 @@
+package com.werdpressed.partisan.rundo;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.widget.EditText;
+
+/**
+ * <code>RunDoGroup</code> implementations keep a separate history for each of several
+ * {@link EditText} fields, such as those of a form, from a single instance. Fields are identified
+ * by their view id, so history survives configuration changes. All fields share one
+ * {@link Scheduler} and one memory budget, and when the budget is exceeded entries are removed
+ * from the field edited least recently first.
+ *
+ * @author Tom Calver
+ */
+public interface RunDoGroup {
+
+    String TAG = "RunDoGroup";
+
+    String FIELD_IDS_TAG = "field_ids";
+    String FIELD_TAG = "field_";
+
+    /**
+     * Starts tracking a field, or returns its existing history if a field with the same id is
+     * already tracked. History saved with instance state is restored when a field with the same
+     * id is tracked again, so fields should be tracked each time the host is created.
+     *
+     * @param editText Field to track, which must have a view id that is unique within the group
+     * @return History of the field, through which to call {@link History#undo()} and
+     * {@link History#redo()}, and set its parameters.
+     * @throws IllegalArgumentException If editText has no id
+     */
+    History track(EditText editText);
+
+    /**
+     * Stops tracking a field, and discards its history.
+     *
+     * @param editText Field previously passed to {@link #track(EditText)}
+     */
+    void untrack(EditText editText);
+
+    /**
+     *
+     * @param editText Field previously passed to {@link #track(EditText)}
+     * @return History of the field, or null if it is not tracked.
+     */
+    History getHistory(EditText editText);
+
+    /**
+     * Sets the memory available to the undo and redo queues of all fields together. Default value
+     * is {@value HistoryPool#DEFAULT_MEMORY_BUDGET}.
+     * @param bytes Approximate memory available to all queues, in bytes
+     * @see {@link HistoryPool#setMemoryBudget(long)}
+     */
+    void setHistoryMemoryBudget(long bytes);
+
+    /**
+     * Returns a {@link RunDoGroup} implementation which extends either
+     * {@link android.support.v4.app.Fragment} or {@link android.app.Fragment}.
+     */
+    final class Factory {
+
+        private Factory() { throw new AssertionError(); }
+
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        public static RunDoGroup getInstance(@NonNull android.app.FragmentManager fm) {
+
+            RunDoGroupNative frag = (RunDoGroupNative) fm.findFragmentByTag(RunDoGroup.TAG);
+
+            if (frag == null) {
+                frag = RunDoGroupNative.newInstance();
+                fm.beginTransaction().add(frag, RunDoGroup.TAG).commit();
+            }
+
+            return frag;
+
+        }
+
+        public static RunDoGroup getInstance(@NonNull android.support.v4.app.FragmentManager fm) {
+
+            RunDoGroupSupport frag = (RunDoGroupSupport) fm.findFragmentByTag(RunDoGroup.TAG);
+
+            if (frag == null) {
+                frag = RunDoGroupSupport.newInstance();
+                fm.beginTransaction().add(frag, RunDoGroup.TAG).commit();
+            }
+
+            return frag;
+
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.werdpressed.partisan.rundo;
+
+import android.annotation.TargetApi;
+import android.app.Fragment;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.EditText;
+
+/**
+ * Implementation of {@link RunDoGroup} which extends {@link Fragment}. It is best to create an
+ * instance of this class with {@link com.werdpressed.partisan.rundo.RunDoGroup.Factory}, rather
+ * than with {@link #newInstance()} or {@link #RunDoGroupNative()} directly.
+ *
+ * Each field is tracked by a {@link HistoryEngine} in a single {@link HistoryPool}.
+ *
+ * @author Tom Calver
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class RunDoGroupNative extends Fragment implements RunDoGroup {
+
+    private final HistoryPool<Integer> mPool;
+    private final SparseArray<Field> mFields;
+
+    /**
+     * State saved for fields which have not yet been tracked again.
+     */
+    private final SparseArray<HistoryEngine.State> mRestoredStates;
+
+    public RunDoGroupNative() {
+        mPool = new HistoryPool<>(HandlerScheduler.getShared());
+        mFields = new SparseArray<>();
+        mRestoredStates = new SparseArray<>();
+    }
+
+    public static RunDoGroupNative newInstance() {
+        return new RunDoGroupNative();
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        //Restored here, rather than in onActivityCreated(), as fields are tracked by the host as
+        //it is created
+        if (savedInstanceState == null) return;
+
+        final int[] ids = savedInstanceState.getIntArray(FIELD_IDS_TAG);
+
+        if (ids == null) return;
+
+        for (int id : ids) {
+
+            final Bundle field = savedInstanceState.getBundle(FIELD_TAG + id);
+
+            if (field == null) continue;
+
+            final ParcelableQueue undoQueue = field.getParcelable(RunDo.UNDO_TAG);
+            final ParcelableQueue redoQueue = field.getParcelable(RunDo.REDO_TAG);
+
+            final HistoryEngine.State state = new HistoryEngine.State(
+                    (undoQueue != null) ? undoQueue.getQueue() : null,
+                    (redoQueue != null) ? redoQueue.getQueue() : null,
+                    field.getString(RunDo.OLD_TEXT_TAG),
+                    field.getBoolean(RunDo.CONFIG_CHANGE_TAG)
+            );
+
+            final Field tracked = mFields.get(id);
+
+            if (tracked != null) {
+                tracked.mEngine.restoreState(state);
+            } else {
+                mRestoredStates.put(id, state);
+            }
+
+        }
+
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        for (int i = 0; i < mFields.size(); i++) {
+            mFields.valueAt(i).resume();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        for (int i = 0; i < mFields.size(); i++) {
+            mFields.valueAt(i).pause();
+        }
+        super.onPause();
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        if (mFields.size() == 0) return;
+
+        //All queues share the space available to a single queue
+        final int maxParcelledChars = ItemParcelUtils.MAX_PARCELLED_CHARS / (mFields.size() * 2);
+
+        final int[] ids = new int[mFields.size()];
+
+        for (int i = 0; i < mFields.size(); i++) {
+
+            ids[i] = mFields.keyAt(i);
+
+            final HistoryEngine.State state = mFields.valueAt(i).mEngine.saveState();
+
+            final Bundle field = new Bundle();
+            field.putParcelable(
+                    RunDo.UNDO_TAG, new ParcelableQueue(state.undoQueue, maxParcelledChars)
+            );
+            field.putParcelable(
+                    RunDo.REDO_TAG, new ParcelableQueue(state.redoQueue, maxParcelledChars)
+            );
+            field.putString(RunDo.OLD_TEXT_TAG, state.oldText);
+            field.putBoolean(RunDo.CONFIG_CHANGE_TAG, state.isCommitOutstanding);
+
+            outState.putBundle(FIELD_TAG + ids[i], field);
+
+        }
+
+        outState.putIntArray(FIELD_IDS_TAG, ids);
+
+    }
+
+    @Override
+    public void onDestroy() {
+        for (int i = 0; i < mFields.size(); i++) {
+            mFields.valueAt(i).mEngine.close();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     *
+     * @see {@link RunDoGroup#track(EditText)}
+     */
+    @Override
+    public History track(EditText editText) {
+
+        final int id = getFieldId(editText);
+
+        Field field = mFields.get(id);
+
+        if (field != null) {
+            //The host has been recreated, so the field is a new view
+            if (field.mEditText != editText) {
+                if (isResumed()) field.mEditText.removeTextChangedListener(field);
+                field.mEditText = editText;
+                if (isResumed()) field.mEditText.addTextChangedListener(field);
+            }
+            return field.mEngine;
+        }
+
+        field = new Field(editText);
+        field.mEngine = mPool.add(id, field);
+        mFields.put(id, field);
+
+        final HistoryEngine.State state = mRestoredStates.get(id);
+
+        if (state != null) {
+            mRestoredStates.remove(id);
+            field.mEngine.restoreState(state);
+        }
+
+        if (isResumed()) field.resume();
+
+        return field.mEngine;
+
+    }
+
+    /**
+     *
+     * @see {@link RunDoGroup#untrack(EditText)}
+     */
+    @Override
+    public void untrack(EditText editText) {
+
+        final int id = getFieldId(editText);
+        final Field field = mFields.get(id);
+
+        mRestoredStates.remove(id);
+
+        if (field == null) return;
+
+        if (isResumed()) field.mEditText.removeTextChangedListener(field);
+        field.mEngine.close();
+
+        mFields.remove(id);
+        mPool.remove(id);
+
+    }
+
+    /**
+     *
+     * @see {@link RunDoGroup#getHistory(EditText)}
+     */
+    @Override
+    public History getHistory(EditText editText) {
+        return mPool.get(getFieldId(editText));
+    }
+
+    /**
+     *
+     * @see {@link RunDoGroup#setHistoryMemoryBudget(long)}
+     */
+    @Override
+    public void setHistoryMemoryBudget(long bytes) {
+        mPool.setMemoryBudget(bytes);
+    }
+
+    private static int getFieldId(EditText editText) {
+
+        final int id = editText.getId();
+
+        if (id == View.NO_ID) {
+            throw new IllegalArgumentException(editText.toString() + " must have an id");
+        }
+
+        return id;
+
+    }
+
+    /**
+     * Links a tracked {@link EditText} with its {@link HistoryEngine}, reporting changes to the
+     * engine and applying its undo and redo calls.
+     */
+    private static final class Field implements TextTarget, TextWatcher {
+
+        private EditText mEditText;
+        private HistoryEngine mEngine;
+
+        Field(EditText editText) {
+            mEditText = editText;
+        }
+
+        void resume() {
+            mEditText.addTextChangedListener(this);
+            mEngine.resume();
+        }
+
+        void pause() {
+            mEditText.removeTextChangedListener(this);
+            mEngine.pause();
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            mEngine.beforeTextChanged(s, start, count, after);
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            mEngine.onTextChanged(s, start, before, count);
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            mEngine.afterTextChanged();
+        }
+
+        @Override
+        public void replace(int start, int end, CharSequence text) {
+            mEditText.getText().replace(start, end, text);
+        }
+
+        @Override
+        public void setSelection(int index) {
+            mEditText.setSelection(index);
+        }
+
+        @Override
+        public int length() {
+            return mEditText.getText().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mEditText.getText().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return mEditText.getText().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return mEditText.getText().toString();
+        }
+
+    }
+
+}
@@ -5,42 +5,30 @@ import android.app.Fragment;
 import android.content.Context;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.text.Editable;
 
+import java.io.File;
+import java.util.List;
+
 /**
  * Implementation of {@link RunDo} which extends {@link Fragment}. It is best to create an
  * instance of this class with {@link com.werdpressed.partisan.rundo.RunDo.Factory}, rather than
  * with {@link #newInstance()} or {@link #RunDoNative()} directly.
  *
+ * History is tracked by a {@link HistoryEngine}, to which this class passes changes to the
+ * {@link android.widget.EditText} and lifecycle events.
+ *
  * @author Tom Calver
  */
 @TargetApi(Build.VERSION_CODES.HONEYCOMB)
 public class RunDoNative extends Fragment implements RunDo {
 
     private RunDo.TextLink mTextLink;
-    private RunDo.Callbacks mCallbacks;
-
-    private final Handler mHandler;
-    private final WriteToArrayDequeRunnable mRunnable;
-    private boolean isRunning;
-
-    private long countdownTimerLength;
-    private int queueSize;
-
-    private FixedSizeArrayDeque<SubtractStrings.Item> mUndoQueue, mRedoQueue;
 
-    private String mOldText, mNewText;
-    private int trackingState;
+    private final HistoryEngine mEngine;
 
     public RunDoNative() {
-        mHandler = new Handler();
-        mRunnable = new WriteToArrayDequeRunnable(this);
-
-        countdownTimerLength = DEFAULT_TIMER_LENGTH;
-        queueSize = DEFAULT_QUEUE_SIZE;
-
-        trackingState = TRACKING_ENDED;
+        mEngine = new HistoryEngine(new EditTextTarget(), HandlerScheduler.getShared());
     }
 
     public static RunDoNative newInstance() {
@@ -56,16 +44,7 @@ public class RunDoNative extends Fragment implements RunDo {
             throw new ClassCastException(context.toString() + " must implement RunDo.TextLink");
         }
 
-        if (context instanceof RunDo.Callbacks) mCallbacks = (RunDo.Callbacks) context;
-    }
-
-    @Override
-    public void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-
-        if (mUndoQueue == null) mUndoQueue = new FixedSizeArrayDeque<>(queueSize);
-        if (mRedoQueue == null) mRedoQueue = new FixedSizeArrayDeque<>(queueSize);
-
+        if (context instanceof RunDo.Callbacks) mEngine.setCallbacks((RunDo.Callbacks) context);
     }
 
     @Override
@@ -73,16 +52,17 @@ public class RunDoNative extends Fragment implements RunDo {
         super.onActivityCreated(savedInstanceState);
 
         if (savedInstanceState != null) {
-            mUndoQueue = savedInstanceState.getParcelable(UNDO_TAG);
-            mRedoQueue = savedInstanceState.getParcelable(REDO_TAG);
-
-            mOldText = savedInstanceState.getString(OLD_TEXT_TAG);
 
-            isRunning = savedInstanceState.getBoolean(CONFIG_CHANGE_TAG);
+            final ParcelableQueue undoQueue = savedInstanceState.getParcelable(UNDO_TAG);
+            final ParcelableQueue redoQueue = savedInstanceState.getParcelable(REDO_TAG);
 
-            if(isRunning) startCountdownRunnable();
+            mEngine.restoreState(new HistoryEngine.State(
+                    (undoQueue != null) ? undoQueue.getQueue() : null,
+                    (redoQueue != null) ? redoQueue.getQueue() : null,
+                    savedInstanceState.getString(OLD_TEXT_TAG),
+                    savedInstanceState.getBoolean(CONFIG_CHANGE_TAG)
+            ));
 
-            trackingState = TRACKING_STARTED;
         }
 
     }
@@ -91,125 +71,157 @@ public class RunDoNative extends Fragment implements RunDo {
     public void onResume() {
         super.onResume();
         mTextLink.getEditTextForRunDo().addTextChangedListener(this);
+        mEngine.resume();
+    }
+
+    @Override
+    public void onPause() {
+        mTextLink.getEditTextForRunDo().removeTextChangedListener(this);
+
+        //The app may be killed at any point after this, so text entered so far is journaled now
+        mEngine.pause();
+
+        super.onPause();
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        outState.putParcelable(UNDO_TAG, mUndoQueue);
-        outState.putParcelable(REDO_TAG, mRedoQueue);
-
-        outState.putString(OLD_TEXT_TAG, mOldText);
+        final HistoryEngine.State state = mEngine.saveState();
 
-        outState.putBoolean(CONFIG_CHANGE_TAG, isRunning);
+        outState.putParcelable(UNDO_TAG, new ParcelableQueue(state.undoQueue));
+        outState.putParcelable(REDO_TAG, new ParcelableQueue(state.redoQueue));
+        outState.putString(OLD_TEXT_TAG, state.oldText);
+        outState.putBoolean(CONFIG_CHANGE_TAG, state.isCommitOutstanding);
 
-        if (isRunning) stopCountdownRunnable();
+    }
 
+    @Override
+    public void onDestroy() {
+        mEngine.close();
+        super.onDestroy();
     }
 
     @Override
     public void onDetach() {
+        mEngine.setCallbacks(null);
         mTextLink = null;
         super.onDetach();
     }
 
     @Override
     public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-
-        if (mOldText == null) mOldText = mTextLink.getEditTextForRunDo().getText().toString();
-
-        if (trackingState == TRACKING_ENDED) {
-
-            //Redo Queue should only be required as response to Undo calls. Otherwise clear.
-            mRedoQueue.clear();
-
-            startCountdownRunnable();
-            trackingState = TRACKING_CURRENT;
-        }
-
+        mEngine.beforeTextChanged(s, start, count, after);
     }
 
     @Override
     public void onTextChanged(CharSequence s, int start, int before, int count) {
-
-        switch (trackingState) {
-            case TRACKING_STARTED:
-                trackingState = TRACKING_ENDED;
-                break;
-            case TRACKING_CURRENT:
-                restartCountdownRunnable();
-                break;
-        }
-
+        mEngine.onTextChanged(s, start, before, count);
     }
 
     @Override
     public void afterTextChanged(Editable s) {
-        //Unused
+        mEngine.afterTextChanged();
+    }
+
+    /**
+     *
+     * @see {@link RunDo#setQueueSize(int)}
+     */
+    @Override
+    public void setQueueSize(int size) {
+        mEngine.setQueueSize(size);
     }
 
     /**
      *
-     * @see {@link WriteToArrayDeque#getNewString()}
+     * @see {@link RunDo#setHistoryMemoryBudget(long)}
      */
     @Override
-    public String getNewString() {
-        mNewText = mTextLink.getEditTextForRunDo().getText().toString();
-        return mNewText;
+    public void setHistoryMemoryBudget(long bytes) {
+        mEngine.setHistoryMemoryBudget(bytes);
     }
 
     /**
      *
-     * @see {@link WriteToArrayDeque#getOldString()}
+     * @see {@link RunDo#setHistoryJournal(File)}
      */
     @Override
-    public String getOldString() {
-        return mOldText;
+    public void setHistoryJournal(File file) {
+        mEngine.setHistoryJournal(file);
     }
 
     /**
      *
-     * @see {@link WriteToArrayDeque#notifyArrayDequeDataReady(com.werdpressed.partisan.rundo.SubtractStrings.Item)}
+     * @see {@link RunDo#setTimerLength(long)}
      */
     @Override
-    public void notifyArrayDequeDataReady(SubtractStrings.Item item) {
+    public void setTimerLength(long lengthInMillis) {
+        mEngine.setTimerLength(lengthInMillis);
+    }
 
-        mUndoQueue.addFirst(item);
+    /**
+     *
+     * @see {@link RunDo#setAdaptiveTimerLength(long, long)}
+     */
+    @Override
+    public void setAdaptiveTimerLength(long minLengthInMillis, long maxLengthInMillis) {
+        mEngine.setAdaptiveTimerLength(minLengthInMillis, maxLengthInMillis);
+    }
 
-        mOldText = mTextLink.getEditTextForRunDo().getText().toString();
+    /**
+     *
+     * @see {@link RunDo#setDiffStrategy(DiffStrategy)}
+     */
+    @Override
+    public void setDiffStrategy(DiffStrategy strategy) {
+        mEngine.setDiffStrategy(strategy);
+    }
 
-        trackingState = TRACKING_ENDED;
+    /**
+     *
+     * @see {@link RunDo#setDiffTimeBudget(long)}
+     */
+    @Override
+    public void setDiffTimeBudget(long timeBudgetInMillis) {
+        mEngine.setDiffTimeBudget(timeBudgetInMillis);
+    }
 
+    /**
+     *
+     * @see {@link RunDo#setHistoryMetrics(HistoryMetrics)}
+     */
+    @Override
+    public void setHistoryMetrics(HistoryMetrics metrics) {
+        mEngine.setHistoryMetrics(metrics);
     }
 
     /**
      *
-     * @see {@link WriteToArrayDeque#setIsRunning(boolean)}
+     * @see {@link RunDo#setOffHeapThreshold(int)}
      */
     @Override
-    public void setIsRunning(boolean isRunning) {
-        this.isRunning = isRunning;
+    public void setOffHeapThreshold(int length) {
+        mEngine.setOffHeapThreshold(length);
     }
 
     /**
      *
-     * @see {@link RunDo#setQueueSize(int)}
+     * @see {@link RunDo#setTrackingMode(int)}
      */
     @Override
-    public void setQueueSize(int size) {
-        queueSize = size;
-        mUndoQueue = new FixedSizeArrayDeque<>(queueSize);
-        mRedoQueue = new FixedSizeArrayDeque<>(queueSize);
+    public void setTrackingMode(int mode) {
+        mEngine.setTrackingMode(mode);
     }
 
     /**
      *
-     * @see {@link RunDo#setTimerLength(long)}
+     * @see {@link RunDo#setHistoryGranularity(int)}
      */
     @Override
-    public void setTimerLength(long lengthInMillis) {
-        countdownTimerLength = lengthInMillis;
+    public void setHistoryGranularity(int granularity) {
+        mEngine.setHistoryGranularity(granularity);
     }
 
     /**
@@ -218,59 +230,7 @@ public class RunDoNative extends Fragment implements RunDo {
      */
     @Override
     public void undo() {
-
-        if (isRunning) {
-            restartCountdownRunnableImmediately();
-            return;
-        }
-
-        trackingState = TRACKING_STARTED;
-
-        if (mUndoQueue.peek() == null) {
-            //Log.e(TAG, "Undo Queue Empty");
-            return;
-        }
-
-        try {
-
-            SubtractStrings.Item temp = mUndoQueue.poll();
-
-            switch (temp.getDeviationType()) {
-                case SubtractStrings.ADDITION:
-                    mTextLink.getEditTextForRunDo().getText().delete(
-                            temp.getFirstDeviation(),
-                            temp.getLastDeviationNewText()
-                    );
-                    break;
-                case SubtractStrings.DELETION:
-                    mTextLink.getEditTextForRunDo().getText().insert(
-                            temp.getFirstDeviation(),
-                            temp.getReplacedText());
-                    break;
-                case SubtractStrings.REPLACEMENT:
-                    mTextLink.getEditTextForRunDo().getText().replace(
-                            temp.getFirstDeviation(),
-                            temp.getLastDeviationNewText(),
-                            temp.getReplacedText());
-                    break;
-                case SubtractStrings.UNCHANGED:
-                    break;
-                default:
-                    break;
-            }
-
-            mTextLink.getEditTextForRunDo().setSelection(temp.getFirstDeviation());
-
-            mRedoQueue.addFirst(temp);
-
-            if (mCallbacks != null) mCallbacks.undoCalled();
-
-        } catch (IndexOutOfBoundsException e) {
-            e.printStackTrace();
-        } finally {
-            mOldText = mTextLink.getEditTextForRunDo().getText().toString();
-        }
-
+        mEngine.undo();
     }
 
     /**
@@ -279,85 +239,122 @@ public class RunDoNative extends Fragment implements RunDo {
      */
     @Override
     public void redo() {
+        mEngine.redo();
+    }
 
-        trackingState = TRACKING_STARTED;
-
-        if (mRedoQueue.peek() == null) {
-            //Log.e(TAG, "Redo Queue Empty");
-            return;
-        }
+    /**
+     *
+     * @see {@link RunDo#undo(int)}
+     */
+    @Override
+    public void undo(int steps) {
+        mEngine.undo(steps);
+    }
 
-        try {
+    /**
+     *
+     * @see {@link RunDo#redo(int)}
+     */
+    @Override
+    public void redo(int steps) {
+        mEngine.redo(steps);
+    }
 
-            SubtractStrings.Item temp = mRedoQueue.poll();
-
-            switch (temp.getDeviationType()) {
-                case SubtractStrings.ADDITION:
-                    mTextLink.getEditTextForRunDo().getText().insert(
-                            temp.getFirstDeviation(),
-                            temp.getAlteredText());
-                    break;
-                case SubtractStrings.DELETION:
-                    mTextLink.getEditTextForRunDo().getText().delete(
-                            temp.getFirstDeviation(),
-                            temp.getLastDeviationOldText()
-                    );
-                    break;
-                case SubtractStrings.REPLACEMENT:
-                    mTextLink.getEditTextForRunDo().getText().replace(
-                            temp.getFirstDeviation(),
-                            temp.getLastDeviationOldText(),
-                            temp.getAlteredText());
-                    break;
-                case SubtractStrings.UNCHANGED:
-                    break;
-                default:
-                    break;
-
-            }
-
-            mTextLink.getEditTextForRunDo().setSelection(temp.getFirstDeviation());
-
-            mUndoQueue.addFirst(temp);
-
-            if (mCallbacks != null) mCallbacks.redoCalled();
-
-        } catch (IndexOutOfBoundsException e) {
-            e.printStackTrace();
-        } finally {
-            mOldText = mTextLink.getEditTextForRunDo().getText().toString();
-        }
+    /**
+     *
+     * @see {@link RunDo#revertTo(int)}
+     */
+    @Override
+    public void revertTo(int historyIndex) {
+        mEngine.revertTo(historyIndex);
+    }
 
+    /**
+     *
+     * @see {@link RunDo#getHistoryIndex()}
+     */
+    @Override
+    public int getHistoryIndex() {
+        return mEngine.getHistoryIndex();
     }
 
     /**
      *
-     * @see {@link RunDo#clearAllQueues()}
+     * @see {@link RunDo#getHistorySize()}
      */
     @Override
-    public void clearAllQueues() {
-        mUndoQueue.clear();
-        mRedoQueue.clear();
+    public int getHistorySize() {
+        return mEngine.getHistorySize();
     }
 
-    private void restartCountdownRunnableImmediately() {
-        stopCountdownRunnable();
-        mHandler.post(mRunnable);
+    /**
+     *
+     * @see {@link RunDo#getBranches()}
+     */
+    @Override
+    public List<HistoryBranch> getBranches() {
+        return mEngine.getBranches();
     }
 
-    private void startCountdownRunnable() {
-        isRunning = true;
-        mHandler.postDelayed(mRunnable, countdownTimerLength);
+    /**
+     *
+     * @see {@link RunDo#switchToBranch(HistoryBranch)}
+     */
+    @Override
+    public void switchToBranch(HistoryBranch branch) {
+        mEngine.switchToBranch(branch);
     }
 
-    private void stopCountdownRunnable() {
-        mHandler.removeCallbacks(mRunnable);
-        isRunning = false;
+    /**
+     *
+     * @see {@link RunDo#clearAllQueues()}
+     */
+    @Override
+    public void clearAllQueues() {
+        mEngine.clearAllQueues();
     }
 
-    private void restartCountdownRunnable() {
-        stopCountdownRunnable();
-        startCountdownRunnable();
+    /**
+     * {@link TextTarget} for the {@link android.widget.EditText} returned by
+     * {@link RunDo.TextLink#getEditTextForRunDo()}. Changes made through this class are reported
+     * back to {@link #mEngine} by the EditText's {@link android.text.TextWatcher}s.
+     */
+    private final class EditTextTarget implements TextTarget {
+
+        private Editable getText() {
+            return mTextLink.getEditTextForRunDo().getText();
+        }
+
+        @Override
+        public void replace(int start, int end, CharSequence text) {
+            getText().replace(start, end, text);
+        }
+
+        @Override
+        public void setSelection(int index) {
+            mTextLink.getEditTextForRunDo().setSelection(index);
+        }
+
+        @Override
+        public int length() {
+            return getText().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return getText().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return getText().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return getText().toString();
+        }
+
     }
 
-}
\ No newline at end of file
+}